@@ -0,0 +1,27 @@
+package de.maxhenkel.audioplayer;
+
+import org.openjdk.jmh.annotations.*;
+
+// gc.alloc.rate.norm of the gc profiler should be 0 bytes per operation, which PlaybackAllocationTest checks
+@State(Scope.Thread)
+public class PlaybackBenchmark {
+
+    @Param({"100"})
+    public int players;
+
+    @Param({"500"})
+    public int listeners;
+
+    private PlaybackFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new PlaybackFixture(players, listeners);
+    }
+
+    @Benchmark
+    public void tick() {
+        fixture.tick();
+    }
+
+}
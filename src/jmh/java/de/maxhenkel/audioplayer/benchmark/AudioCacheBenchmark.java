@@ -0,0 +1,53 @@
+package de.maxhenkel.audioplayer.benchmark;
+
+import de.maxhenkel.audioplayer.AudioCache;
+import de.maxhenkel.audioplayer.EncodedAudio;
+import de.maxhenkel.audioplayer.fixture.FixtureApi;
+import de.maxhenkel.audioplayer.fixture.FixtureAudio;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+@Threads(8)
+public class AudioCacheBenchmark {
+
+    @Param({"16", "1024"})
+    public int sounds;
+
+    // The share of all sounds that fits into the cache
+    @Param({"1.0", "0.5"})
+    public double cacheRatio;
+
+    private short[] pcm;
+    private String[] keys;
+    private AudioCache cache;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        FixtureApi.install();
+        pcm = FixtureAudio.createPcm(1);
+        keys = new String[sounds];
+        for (int i = 0; i < sounds; i++) {
+            keys[i] = "sound" + i;
+        }
+        long soundSize = EncodedAudio.encode(pcm).getSize();
+        cache = new AudioCache((long) (soundSize * sounds * cacheRatio));
+    }
+
+    @Benchmark
+    public EncodedAudio get() throws Exception {
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        try {
+            // Misses load on the benchmark thread
+            return cache.getAsync(key, audio -> EncodedAudio.encode(pcm, audio), Runnable::run).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+}
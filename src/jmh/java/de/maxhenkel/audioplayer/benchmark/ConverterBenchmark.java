@@ -0,0 +1,61 @@
+package de.maxhenkel.audioplayer.benchmark;
+
+import de.maxhenkel.audioplayer.AudioConverter;
+import de.maxhenkel.audioplayer.EncodedAudio;
+import de.maxhenkel.audioplayer.fixture.FixtureApi;
+import de.maxhenkel.audioplayer.fixture.FixtureAudio;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@State(Scope.Benchmark)
+public class ConverterBenchmark {
+
+    @Param({"1", "10", "60"})
+    public int seconds;
+
+    @Param({"44100", "48000"})
+    public int sampleRate;
+
+    @Param({"1", "2"})
+    public int channels;
+
+    private Path folder;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        FixtureApi.install();
+        folder = Files.createTempDirectory("audioplayer-benchmark");
+        file = FixtureAudio.createWav(folder, seconds, sampleRate, channels);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(folder);
+    }
+
+    @Benchmark
+    public short[] convertWav() throws Exception {
+        return AudioConverter.convertWav(file);
+    }
+
+    @Benchmark
+    public long writePcm() throws Exception {
+        return AudioConverter.writePcm(file, AudioConverter.AudioType.WAV, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public EncodedAudio streamEncode() throws Exception {
+        EncodedAudio audio = new EncodedAudio();
+        try (AudioInputStream stream = AudioConverter.getStream(file)) {
+            EncodedAudio.encode(stream, audio, null);
+        }
+        return audio;
+    }
+
+}
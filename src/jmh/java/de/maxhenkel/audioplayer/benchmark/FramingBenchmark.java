@@ -0,0 +1,60 @@
+package de.maxhenkel.audioplayer.benchmark;
+
+import de.maxhenkel.audioplayer.AudioConverter;
+import de.maxhenkel.audioplayer.EncodedAudio;
+import de.maxhenkel.audioplayer.fixture.FixtureAudio;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@State(Scope.Benchmark)
+public class FramingBenchmark {
+
+    @Param({"10", "60", "300"})
+    public int seconds;
+
+    private short[] pcm;
+    private Path pcmFile;
+    private ShortBuffer mappedPcm;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        pcm = FixtureAudio.createPcm(seconds);
+        ByteBuffer buffer = ByteBuffer.allocate(pcm.length * 2);
+        AudioConverter.asPcm(buffer).put(pcm);
+        pcmFile = Files.createTempFile("audioplayer-benchmark", ".pcm");
+        Files.write(pcmFile, buffer.array());
+        try (FileChannel channel = FileChannel.open(pcmFile, StandardOpenOption.READ)) {
+            mappedPcm = AudioConverter.asPcm(channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(pcmFile);
+    }
+
+    @Benchmark
+    public void heap(Blackhole blackhole) {
+        frame(new EncodedAudio.AudioSupplier(pcm), blackhole);
+    }
+
+    @Benchmark
+    public void mapped(Blackhole blackhole) {
+        frame(new EncodedAudio.AudioSupplier(mappedPcm.duplicate()), blackhole);
+    }
+
+    private static void frame(EncodedAudio.AudioSupplier supplier, Blackhole blackhole) {
+        short[] frame;
+        while ((frame = supplier.get()) != null) {
+            blackhole.consume(frame);
+        }
+    }
+
+}
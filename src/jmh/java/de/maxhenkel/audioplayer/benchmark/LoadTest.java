@@ -0,0 +1,330 @@
+package de.maxhenkel.audioplayer.benchmark;
+
+import de.maxhenkel.audioplayer.*;
+import de.maxhenkel.audioplayer.fixture.FixtureApi;
+import de.maxhenkel.audioplayer.fixture.FixtureAudio;
+import de.maxhenkel.audioplayer.jfr.PlaybackStartEvent;
+import de.maxhenkel.voicechat.api.VoicechatConnection;
+import de.maxhenkel.voicechat.api.VoicechatServerApi;
+import de.maxhenkel.voicechat.api.audiochannel.LocationalAudioChannel;
+import de.maxhenkel.voicechat.api.audiochannel.StaticAudioChannel;
+import jdk.jfr.EventType;
+import jdk.jfr.consumer.RecordingStream;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.phys.Vec3;
+
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Simulates jukeboxes, announcers and goat horns playing to moving listeners without a running server
+// Playback is started through PlayerManager, with generated audio instead of the audio manager and without a level
+// Usage: ./gradlew loadTest -PloadTestArgs="jukeboxes=200 listeners=500 duration=60"
+public class LoadTest {
+
+    private static final long TICK_MILLIS = 50L;
+    private static final double WALK_DISTANCE_PER_TICK = 0.2D;
+    private static final int GOAT_HORN_SECONDS = 3;
+
+    private final int jukeboxes;
+    private final int announcers;
+    private final int listenerCount;
+    private final int goatHorns;
+    private final int goatHornInterval;
+    private final int duration;
+    private final int soundLength;
+    private final int sounds;
+    private final int area;
+    private final float range;
+
+    private final Random random;
+    private final VoicechatServerApi api;
+    private final AudioCache cache;
+    private final PlayerManager playerManager;
+    private final Map<UUID, short[]> pcm;
+    private final List<UUID> soundIds;
+    private final UUID goatHornSound;
+    private final List<ListenerIndex.Listener> listeners;
+    private final Map<UUID, Playback> playbacks;
+
+    private final LatencyHistogram frameJitter;
+    private final LatencyHistogram startLatency;
+    private final AtomicLong framesReceived;
+    private volatile boolean running;
+
+    public LoadTest(Map<String, String> options) {
+        this.jukeboxes = getInt(options, "jukeboxes", 200);
+        this.announcers = getInt(options, "announcers", 20);
+        this.listenerCount = getInt(options, "listeners", 500);
+        this.goatHorns = getInt(options, "goat_horns", 50);
+        this.goatHornInterval = getInt(options, "goat_horn_interval", 10);
+        this.duration = getInt(options, "duration", 60);
+        this.soundLength = getInt(options, "sound_length", 30);
+        this.sounds = getInt(options, "sounds", 10);
+        this.area = getInt(options, "area", 512);
+        this.range = getInt(options, "range", 65);
+
+        FixtureApi.install();
+        this.random = new Random(0L);
+        this.api = createServerApi();
+        this.cache = new AudioCache(Long.MAX_VALUE);
+        this.playerManager = new PlayerManager(new AudioLoader(getInt(options, "loader_threads", 2)), new GeneratedSounds());
+        this.pcm = new HashMap<>();
+        this.soundIds = new ArrayList<>();
+        for (int i = 0; i < sounds; i++) {
+            UUID sound = UUID.randomUUID();
+            soundIds.add(sound);
+            pcm.put(sound, FixtureAudio.createPcm(soundLength));
+        }
+        this.goatHornSound = UUID.randomUUID();
+        pcm.put(goatHornSound, FixtureAudio.createPcm(GOAT_HORN_SECONDS));
+        this.listeners = new ArrayList<>();
+        this.playbacks = new ConcurrentHashMap<>();
+
+        this.frameJitter = new LatencyHistogram();
+        this.startLatency = new LatencyHistogram();
+        this.framesReceived = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] split = arg.split("=", 2);
+            if (split.length != 2) {
+                throw new IllegalArgumentException("Invalid argument %s, expected key=value".formatted(arg));
+            }
+            options.put(split[0], split[1]);
+        }
+        new LoadTest(options).run();
+    }
+
+    public void run() throws InterruptedException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        com.sun.management.OperatingSystemMXBean osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+        for (int i = 0; i < listenerCount; i++) {
+            listeners.add(new ListenerIndex.Listener(UUID.randomUUID(), createConnection(), randomCoordinate(), 64D, randomCoordinate()));
+        }
+        updateListeners();
+
+        // PlayerManager reports the time from the play request until the player is started as a flight recorder event
+        RecordingStream startEvents = new RecordingStream();
+        startEvents.enable(PlaybackStartEvent.class);
+        startEvents.onEvent(EventType.getEventType(PlaybackStartEvent.class).getName(), event -> startLatency.record(event.getDuration().toNanos()));
+        startEvents.startAsync();
+
+        running = true;
+        long startCpu = osBean.getProcessCpuTime();
+        threadBean.resetPeakThreadCount();
+
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "LoadTestTicker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::moveListeners, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        ticker.scheduleAtFixedRate(this::restartFinished, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        if (goatHorns > 0 && goatHornInterval > 0) {
+            ticker.scheduleAtFixedRate(this::goatHornBurst, goatHornInterval, goatHornInterval, TimeUnit.SECONDS);
+        }
+
+        for (int i = 0; i < jukeboxes; i++) {
+            play(new Playback(randomPosition(), soundIds.get(i % sounds), Plugin.MUSIC_DISC_CATEGORY, false, true));
+        }
+        for (int i = 0; i < announcers; i++) {
+            play(new Playback(randomPosition(), soundIds.get(i % sounds), Plugin.MUSIC_DISC_CATEGORY, true, true));
+        }
+
+        long streamSeconds = 0L;
+        int peakStreams = 0;
+        long peakHeap = 0L;
+        for (int i = 0; i < duration; i++) {
+            Thread.sleep(1000L);
+            int streams = PlaybackScheduler.instance().getActivePlayers();
+            streamSeconds += streams;
+            peakStreams = Math.max(peakStreams, streams);
+            peakHeap = Math.max(peakHeap, memoryBean.getHeapMemoryUsage().getUsed());
+            System.out.printf("%ss: %s streams, %.0f frames/s%n", i + 1, streams, AudioMetrics.INSTANCE.getFramesPerSecond());
+        }
+
+        running = false;
+        long cpuNanos = osBean.getProcessCpuTime() - startCpu;
+        ticker.shutdownNow();
+        for (UUID channelID : playbacks.keySet()) {
+            playerManager.stop(channelID);
+        }
+        startEvents.close();
+
+        System.out.println();
+        System.out.printf("Streams: %.1f average, %s peak%n", (double) streamSeconds / duration, peakStreams);
+        System.out.printf("CPU: %.1f s total, %.3f ms per stream second%n", cpuNanos / 1_000_000_000D, streamSeconds <= 0L ? 0D : cpuNanos / 1_000_000D / streamSeconds);
+        System.out.printf("Threads: %s peak%n", threadBean.getPeakThreadCount());
+        System.out.printf("Heap: %.1f MB peak%n", peakHeap / 1024D / 1024D);
+        System.out.printf("Frames: %s sent, %s received, %s late%n", AudioMetrics.INSTANCE.getFramesSent(), framesReceived.get(), AudioMetrics.INSTANCE.getLateFrames());
+        System.out.printf("Deadlines: %s missed, %s encode underruns%n", AudioMetrics.INSTANCE.getMissedDeadlines(), AudioMetrics.INSTANCE.getUnderruns());
+        System.out.printf("Frame interval jitter: p50 %s, p99 %s, max %s%n", toMillis(frameJitter.getPercentile(50D)), toMillis(frameJitter.getPercentile(99D)), toMillis(frameJitter.getPercentile(100D)));
+        System.out.printf("Start latency: p50 %s, p99 %s, max %s%n", toMillis(startLatency.getPercentile(50D)), toMillis(startLatency.getPercentile(99D)), toMillis(startLatency.getPercentile(100D)));
+    }
+
+    private void play(Playback playback) {
+        if (!running) {
+            return;
+        }
+        int maxLengthSeconds = Math.max(soundLength, GOAT_HORN_SECONDS);
+        UUID channelID;
+        if (playback.announcer()) {
+            channelID = playerManager.playStatic(api, null, playback.pos(), playback.sound(), null, range, playback.category(), maxLengthSeconds);
+        } else {
+            channelID = playerManager.playLocational(api, null, playback.pos(), playback.sound(), null, range, playback.category(), maxLengthSeconds);
+        }
+        if (channelID != null) {
+            playbacks.put(channelID, playback);
+        }
+    }
+
+    // Jukeboxes and announcers start their sound again once it ended, like they would with a new disc
+    private void restartFinished() {
+        for (Map.Entry<UUID, Playback> entry : playbacks.entrySet()) {
+            if (playerManager.isPlaying(entry.getKey())) {
+                continue;
+            }
+            playbacks.remove(entry.getKey());
+            if (entry.getValue().loop()) {
+                play(entry.getValue());
+            }
+        }
+    }
+
+    private void goatHornBurst() {
+        for (int i = 0; i < goatHorns; i++) {
+            ListenerIndex.Listener listener = listeners.get(random.nextInt(listeners.size()));
+            play(new Playback(new Vec3(listener.x(), listener.y(), listener.z()), goatHornSound, Plugin.GOAT_HORN_CATEGORY, false, false));
+        }
+    }
+
+    private void moveListeners() {
+        for (int i = 0; i < listeners.size(); i++) {
+            ListenerIndex.Listener listener = listeners.get(i);
+            double angle = random.nextDouble() * Math.PI * 2D;
+            double x = Math.max(0D, Math.min(area, listener.x() + Math.cos(angle) * WALK_DISTANCE_PER_TICK));
+            double z = Math.max(0D, Math.min(area, listener.z() + Math.sin(angle) * WALK_DISTANCE_PER_TICK));
+            listeners.set(i, new ListenerIndex.Listener(listener.uuid(), listener.connection(), x, listener.y(), z));
+        }
+        updateListeners();
+    }
+
+    private void updateListeners() {
+        ListenerIndex.instance().update(null, listeners);
+    }
+
+    private Vec3 randomPosition() {
+        return new Vec3(randomCoordinate(), 64D, randomCoordinate());
+    }
+
+    private double randomCoordinate() {
+        return random.nextDouble() * area;
+    }
+
+    private VoicechatServerApi createServerApi() {
+        return FixtureApi.proxy(VoicechatServerApi.class, (proxy, method, args) -> {
+            return switch (method.getName()) {
+                case "createStaticAudioChannel" -> createChannel(StaticAudioChannel.class, new RecordingChannel());
+                case "createLocationalAudioChannel" -> createChannel(LocationalAudioChannel.class, new RecordingChannel());
+                // Levels and positions are only passed back to the API, so they don't need to exist
+                case "fromServerLevel", "createPosition" -> null;
+                // Nobody needs to be told to enable voice chat
+                case "getPlayersInRange" -> List.of();
+                default -> FixtureApi.invoke(proxy, method, args);
+            };
+        });
+    }
+
+    private static VoicechatConnection createConnection() {
+        return FixtureApi.proxy(VoicechatConnection.class, (proxy, method, args) -> {
+            return switch (method.getName()) {
+                case "isDisabled" -> false;
+                case "isConnected", "isInstalled" -> true;
+                default -> FixtureApi.objectMethod(proxy, method.getName(), args);
+            };
+        });
+    }
+
+    private static <T> T createChannel(Class<T> type, RecordingChannel recorder) {
+        UUID id = UUID.randomUUID();
+        return FixtureApi.proxy(type, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "send" -> recorder.onSend();
+                case "flush" -> recorder.onFlush();
+                case "getId" -> {
+                    return id;
+                }
+                case "isClosed" -> {
+                    return false;
+                }
+                case "getLocation" -> {
+                    return null;
+                }
+                default -> {
+                    if (!method.getReturnType().equals(void.class)) {
+                        return FixtureApi.objectMethod(proxy, method.getName(), args);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private static int getInt(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value);
+    }
+
+    private static String toMillis(long nanos) {
+        if (nanos < 0L) {
+            return "-";
+        }
+        return "%.2f ms".formatted(nanos / 1_000_000D);
+    }
+
+    private class GeneratedSounds implements PlayerManager.SoundLookup {
+        @Override
+        public float getLengthSeconds(@Nullable ServerLevel level, UUID sound) {
+            return (float) pcm.get(sound).length / AudioConverter.FORMAT.getSampleRate();
+        }
+
+        @Override
+        public CompletableFuture<EncodedAudio> getSoundAsync(@Nullable ServerLevel level, UUID sound, Executor executor) {
+            return cache.getAsync(sound.toString(), audio -> EncodedAudio.encode(pcm.get(sound), audio), executor);
+        }
+    }
+
+    private record Playback(Vec3 pos, UUID sound, String category, boolean announcer, boolean loop) {
+    }
+
+    // Channels are only used by the playback thread
+    private class RecordingChannel {
+        private long lastSend;
+
+        private void onSend() {
+            long time = System.nanoTime();
+            if (lastSend != 0L) {
+                frameJitter.record(Math.abs(time - lastSend - PacketAudioPlayer.FRAME_SIZE_NS));
+            }
+            lastSend = time;
+            framesReceived.incrementAndGet();
+        }
+
+        private void onFlush() {
+            lastSend = 0L;
+        }
+    }
+
+}
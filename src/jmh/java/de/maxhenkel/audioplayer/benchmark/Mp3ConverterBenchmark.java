@@ -0,0 +1,46 @@
+package de.maxhenkel.audioplayer.benchmark;
+
+import de.maxhenkel.audioplayer.AudioConverter;
+import de.maxhenkel.audioplayer.fixture.FixtureApi;
+import de.maxhenkel.audioplayer.fixture.FixtureAudio;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// The fixture mp3 files are silent, so they decode faster than actual music
+@State(Scope.Benchmark)
+public class Mp3ConverterBenchmark {
+
+    @Param({"1", "10", "60"})
+    public int seconds;
+
+    private Path folder;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        FixtureApi.install();
+        folder = Files.createTempDirectory("audioplayer-benchmark");
+        file = FixtureAudio.createSilentMp3(folder, seconds * 48000 / FixtureAudio.MP3_FRAME_SAMPLES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(folder);
+    }
+
+    // Uses the fallback decoder, since there is no native decoder without the voice chat mod
+    @Benchmark
+    public short[] convertMp3() throws Exception {
+        return AudioConverter.convertMp3(file);
+    }
+
+    @Benchmark
+    public long writePcm() throws Exception {
+        return AudioConverter.writePcm(file, AudioConverter.AudioType.MP3, OutputStream.nullOutputStream());
+    }
+
+}
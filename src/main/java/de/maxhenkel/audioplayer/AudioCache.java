@@ -1,46 +1,155 @@
 package de.maxhenkel.audioplayer;
 
-import java.util.*;
+import de.maxhenkel.audioplayer.jfr.CacheLookupEvent;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AudioCache {
 
-    private final int size;
-    private final Map<UUID, short[]> audioCache;
-    private final Queue<UUID> orderedKeys;
+    private final long maxBytes;
+    private final Map<String, CacheEntry> audioCache;
+    private final Map<String, CompletableFuture<EncodedAudio>> loading;
+    private final AtomicLong accessCounter;
+    private long cachedBytes;
+
+    public AudioCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.audioCache = new ConcurrentHashMap<>();
+        this.loading = new ConcurrentHashMap<>();
+        this.accessCounter = new AtomicLong();
+    }
 
-    public AudioCache(int size) {
-        this.size = size;
-        this.audioCache = new HashMap<>();
-        this.orderedKeys = new ArrayDeque<>();
+    public CompletableFuture<EncodedAudio> getAsync(String key, AudioSupplier supplier, Executor executor) {
+        CacheLookupEvent event = new CacheLookupEvent();
+        event.begin();
+        EncodedAudio cached = getCached(key);
+        if (cached != null) {
+            onHit(key, event);
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<EncodedAudio> future = new CompletableFuture<>();
+        CompletableFuture<EncodedAudio> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            // Joining a load that is still running saves a decode, but doesn't count as a hit
+            AudioMetrics.INSTANCE.onCacheJoin();
+            if (event.shouldCommit()) {
+                event.key = key;
+                event.result = CacheLookupEvent.JOINED;
+                event.commit();
+            }
+            return existing;
+        }
+        cached = getCached(key);
+        if (cached != null) {
+            onHit(key, event);
+            loading.remove(key, future);
+            future.complete(cached);
+            return future;
+        }
+        AudioMetrics.INSTANCE.onCacheMiss();
+        try {
+            executor.execute(() -> load(key, supplier, future, event));
+        } catch (RejectedExecutionException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static void onHit(String key, CacheLookupEvent event) {
+        AudioMetrics.INSTANCE.onCacheHit();
+        if (event.shouldCommit()) {
+            event.key = key;
+            event.result = CacheLookupEvent.HIT;
+            event.commit();
+        }
+    }
+
+    private void load(String key, AudioSupplier supplier, CompletableFuture<EncodedAudio> future, CacheLookupEvent event) {
+        EncodedAudio data = new EncodedAudio();
+        data.setOnPlayable(() -> future.complete(data));
+        long startTime = System.nanoTime();
+        try {
+            supplier.load(data);
+            AudioMetrics.INSTANCE.onDecoded(System.nanoTime() - startTime);
+            if (event.shouldCommit()) {
+                event.key = key;
+                event.result = CacheLookupEvent.MISS;
+                event.commit();
+            }
+            pushCache(key, data);
+            future.complete(data);
+        } catch (Throwable e) {
+            data.fail(e);
+            future.completeExceptionally(e);
+        } finally {
+            loading.remove(key, future);
+        }
     }
 
-    public synchronized short[] get(UUID id, AudioSupplier supplier) throws Exception {
-        short[] data = audioCache.get(id);
-        if (data == null) {
-            short[] uncachedData = supplier.get();
-            pushCache(id, uncachedData);
-            return uncachedData;
+    private EncodedAudio getCached(String key) {
+        CacheEntry entry = audioCache.get(key);
+        if (entry == null) {
+            return null;
         }
-        return data;
+        entry.lastAccess = accessCounter.incrementAndGet();
+        return entry.data;
     }
 
-    private void pushCache(UUID id, short[] data) {
-        if (size <= 0) {
+    private synchronized void pushCache(String key, EncodedAudio data) {
+        long size = data.getSize();
+        if (size > maxBytes) {
             return;
         }
-        if (audioCache.containsKey(id)) {
+        if (audioCache.containsKey(key)) {
             return;
         }
-        if (orderedKeys.size() >= size) {
-            UUID poll = orderedKeys.poll();
-            audioCache.remove(poll);
+        while (cachedBytes + size > maxBytes) {
+            evictLeastRecentlyUsed();
         }
-        orderedKeys.add(id);
-        audioCache.put(id, data);
+        audioCache.put(key, new CacheEntry(data, accessCounter.incrementAndGet()));
+        cachedBytes += size;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        String oldestKey = null;
+        long oldestAccess = Long.MAX_VALUE;
+        for (Map.Entry<String, CacheEntry> entry : audioCache.entrySet()) {
+            if (entry.getValue().lastAccess < oldestAccess) {
+                oldestAccess = entry.getValue().lastAccess;
+                oldestKey = entry.getKey();
+            }
+        }
+        if (oldestKey == null) {
+            cachedBytes = 0L;
+            return;
+        }
+        CacheEntry removed = audioCache.remove(oldestKey);
+        cachedBytes -= removed.data.getSize();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
     }
 
     public interface AudioSupplier {
-        short[] get() throws Exception;
+        void load(EncodedAudio audio) throws Exception;
+    }
+
+    private static class CacheEntry {
+        private final EncodedAudio data;
+        private volatile long lastAccess;
+
+        public CacheEntry(EncodedAudio data, long lastAccess) {
+            this.data = data;
+            this.lastAccess = lastAccess;
+        }
     }
 
 }
@@ -1,15 +1,18 @@
 package de.maxhenkel.audioplayer;
 
+import de.maxhenkel.audioplayer.jfr.ConvertEvent;
 import de.maxhenkel.voicechat.api.mp3.Mp3Decoder;
 
 import javax.annotation.Nullable;
+import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -25,13 +28,14 @@ public class AudioConverter {
     public static AudioFormat FORMAT = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 48000F, 16, 1, 2, 48000F, false);
 
     @Nullable
-    public static AudioType getAudioType(byte[] data) throws UnsupportedAudioFileException, IOException {
-        if (hasMp3MagicBytes(data)) {
+    public static AudioType detectAudioType(Path path) throws UnsupportedAudioFileException, IOException {
+        if (isMp3File(path)) {
             return AudioType.MP3;
         }
-        AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(new ByteArrayInputStream(data));
-        if (isWav(audioInputStream.getFormat())) {
-            return AudioType.WAV;
+        try (AudioInputStream ais = AudioSystem.getAudioInputStream(path.toFile())) {
+            if (isWav(ais.getFormat())) {
+                return AudioType.WAV;
+            }
         }
         return null;
     }
@@ -75,20 +79,96 @@ public class AudioConverter {
     }
 
     public static short[] convertWav(Path file) throws IOException, UnsupportedAudioFileException {
+        ConvertEvent event = new ConvertEvent();
+        event.begin();
+        short[] pcm;
         try (AudioInputStream source = AudioSystem.getAudioInputStream(file.toFile())) {
-            return convert(source);
+            pcm = convert(source);
         }
+        event.commit(file, pcm.length * 2L);
+        return pcm;
     }
 
     private static short[] convert(AudioInputStream source) throws IOException {
+        return Plugin.voicechatApi.getAudioConverter().bytesToShorts(toTargetFormat(source).readAllBytes());
+    }
+
+    private static AudioInputStream toTargetFormat(AudioInputStream source) {
         AudioFormat sourceFormat = source.getFormat();
         AudioFormat convertFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceFormat.getSampleRate(), 16, sourceFormat.getChannels(), sourceFormat.getChannels() * 2, sourceFormat.getSampleRate(), false);
         AudioInputStream stream1 = AudioSystem.getAudioInputStream(convertFormat, source);
-        AudioInputStream stream2 = AudioSystem.getAudioInputStream(FORMAT, stream1);
-        return Plugin.voicechatApi.getAudioConverter().bytesToShorts(stream2.readAllBytes());
+        return AudioSystem.getAudioInputStream(FORMAT, stream1);
+    }
+
+    public static AudioInputStream getStream(Path file) throws IOException, UnsupportedAudioFileException {
+        return getStream(file, getAudioType(file));
+    }
+
+    public static AudioInputStream getStream(Path file, @Nullable AudioType audioType) throws IOException, UnsupportedAudioFileException {
+        if (audioType == null) {
+            throw new UnsupportedAudioFileException("Unsupported audio type");
+        }
+        AudioInputStream source = AudioSystem.getAudioInputStream(file.toFile());
+        try {
+            return toTargetFormat(source);
+        } catch (IllegalArgumentException e) {
+            source.close();
+            throw new UnsupportedAudioFileException("Unsupported audio format: %s".formatted(e.getMessage()));
+        }
+    }
+
+    public static AudioInputStream getPcmStream(InputStream pcm, long size) {
+        return new AudioInputStream(new BufferedInputStream(pcm), FORMAT, size / FORMAT.getFrameSize());
+    }
+
+    public static ShortBuffer asPcm(ByteBuffer buffer) {
+        return buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    }
+
+    public static long writePcm(Path file, AudioType audioType, OutputStream outputStream) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream stream;
+        try {
+            stream = getStream(file, audioType);
+        } catch (UnsupportedAudioFileException e) {
+            byte[] data = Plugin.voicechatApi.getAudioConverter().shortsToBytes(convert(file, audioType));
+            outputStream.write(data);
+            return data.length;
+        }
+        ConvertEvent event = new ConvertEvent();
+        event.begin();
+        long size;
+        try (stream) {
+            size = stream.transferTo(outputStream);
+        }
+        event.commit(file, size);
+        return size;
+    }
+
+    public static long getExpectedSampleCount(Path file) {
+        try {
+            AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file.toFile());
+            float frameRate = fileFormat.getFormat().getFrameRate();
+            if (fileFormat.getFrameLength() != AudioSystem.NOT_SPECIFIED && frameRate > 0F) {
+                return (long) ((double) fileFormat.getFrameLength() / frameRate * FORMAT.getSampleRate());
+            }
+            if (fileFormat.properties().get("duration") instanceof Long durationMicros) {
+                return (long) (durationMicros / 1_000_000D * FORMAT.getSampleRate());
+            }
+        } catch (Exception e) {
+            AudioPlayer.LOGGER.debug("Could not determine length of {}: {}", file.getFileName(), e.getMessage());
+        }
+        return -1L;
     }
 
     public static short[] convertMp3(Path file) throws IOException, UnsupportedAudioFileException {
+        ConvertEvent event = new ConvertEvent();
+        event.begin();
+        short[] pcm = decodeMp3(file);
+        event.commit(file, pcm.length * 2L);
+        return pcm;
+    }
+
+    private static short[] decodeMp3(Path file) throws IOException, UnsupportedAudioFileException {
         try {
             Mp3Decoder mp3Decoder = Plugin.voicechatApi.createMp3Decoder(Files.newInputStream(file));
             if (mp3Decoder == null) {
@@ -122,6 +202,16 @@ public class AudioConverter {
         public String getExtension() {
             return extension;
         }
+
+        @Nullable
+        public static AudioType fromExtension(String extension) {
+            for (AudioType type : values()) {
+                if (type.extension.equals(extension)) {
+                    return type;
+                }
+            }
+            return null;
+        }
     }
 
     public static boolean isMp3File(Path path) throws IOException {
@@ -0,0 +1,106 @@
+package de.maxhenkel.audioplayer;
+
+import de.maxhenkel.audioplayer.jfr.LoaderQueueEvent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AudioLoader {
+
+    private final Lane interactive;
+    private final Lane music;
+
+    public AudioLoader(int musicThreads) {
+        this.interactive = new Lane("interactive", 1);
+        this.music = new Lane("music", musicThreads);
+    }
+
+    public Lane getLane(Priority priority) {
+        return switch (priority) {
+            case INTERACTIVE -> interactive;
+            case MUSIC -> music;
+        };
+    }
+
+    public enum Priority {
+        INTERACTIVE, MUSIC
+    }
+
+    public static class Lane implements Executor {
+
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder completedTasks;
+        private final LongAdder totalWaitNanos;
+        private final AtomicLong maxWaitNanos;
+
+        private Lane(String name, int threads) {
+            this.name = name;
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "AudioPlayerLoader-%s-%s".formatted(name, threadIndex.incrementAndGet()));
+                thread.setDaemon(true);
+                thread.setUncaughtExceptionHandler((t, e) -> {
+                    AudioPlayer.LOGGER.error("Uncaught exception in thread {}", t.getName(), e);
+                });
+                return thread;
+            });
+            this.executor.allowCoreThreadTimeOut(true);
+            this.completedTasks = new LongAdder();
+            this.totalWaitNanos = new LongAdder();
+            this.maxWaitNanos = new AtomicLong();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            long queuedTime = System.nanoTime();
+            LoaderQueueEvent event = new LoaderQueueEvent();
+            event.begin();
+            executor.execute(() -> {
+                long waitNanos = System.nanoTime() - queuedTime;
+                if (event.shouldCommit()) {
+                    event.lane = name;
+                    event.commit();
+                }
+                totalWaitNanos.add(waitNanos);
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+                try {
+                    command.run();
+                } finally {
+                    completedTasks.increment();
+                }
+            });
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return executor.getQueue().size();
+        }
+
+        public int getActiveCount() {
+            return executor.getActiveCount();
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks.sum();
+        }
+
+        public double getAverageWaitMillis() {
+            long tasks = completedTasks.sum();
+            if (tasks <= 0L) {
+                return 0D;
+            }
+            return (double) totalWaitNanos.sum() / (double) tasks / 1_000_000D;
+        }
+
+        public double getMaxWaitMillis() {
+            return (double) maxWaitNanos.get() / 1_000_000D;
+        }
+    }
+
+}
@@ -1,6 +1,13 @@
 package de.maxhenkel.audioplayer;
 
+import de.maxhenkel.audioplayer.config.ServerConfig;
 import de.maxhenkel.audioplayer.interfaces.IJukebox;
+import de.maxhenkel.audioplayer.jfr.ConvertEvent;
+import de.maxhenkel.audioplayer.storage.AudioStore;
+import de.maxhenkel.audioplayer.storage.CachingAudioStore;
+import de.maxhenkel.audioplayer.storage.FileAudioStore;
+import de.maxhenkel.audioplayer.storage.PackAudioStore;
+import de.maxhenkel.audioplayer.storage.SharedAudioStore;
 import de.maxhenkel.voicechat.api.VoicechatServerApi;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.core.BlockPos;
@@ -13,64 +20,241 @@ import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.storage.LevelResource;
 import net.minecraft.world.phys.Vec3;
-import org.apache.commons.io.IOUtils;
 
 import javax.annotation.Nullable;
+import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.*;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class AudioManager {
 
     public static LevelResource AUDIO_DATA = new LevelResource("audio_player_data");
+    public static final String PCM_EXTENSION = "pcm";
+    public static final String ALIAS_EXTENSION = "ref";
+    public static final String CONTENT_FOLDER = "content";
+    static final int CONNECT_TIMEOUT_MS = 10_000;
+    static final int READ_TIMEOUT_MS = 30_000;
 
-    public static short[] getSound(MinecraftServer server, UUID id) throws Exception {
-        return AudioPlayer.AUDIO_CACHE.get(id, () -> AudioConverter.convert(getExistingSoundFile(server, id)));
+    private static SoundCatalog catalog;
+    @Nullable
+    private static AudioStore store;
+    @Nullable
+    private static MinecraftServer storeServer;
+
+    public static CompletableFuture<EncodedAudio> getSoundAsync(MinecraftServer server, UUID id, Executor executor) {
+        // Audio that is not in the catalog yet gets indexed on the executor instead of the calling thread
+        return getCatalog(server).getAsync(id, executor).thenCompose(entry -> {
+            if (entry == null) {
+                return CompletableFuture.failedFuture(new FileNotFoundException("Audio does not exist"));
+            }
+            String key = entry.getContentKey(id);
+            return AudioPlayer.AUDIO_CACHE.getAsync(key, audio -> {
+                loadSound(server, key, entry, audio);
+                if (entry.estimated() && audio.isComplete()) {
+                    getCatalog(server).put(id, entry.withDurationSamples(audio.getSampleCount()));
+                }
+            }, executor);
+        });
     }
 
-    public static Path getSoundFile(MinecraftServer server, UUID id, String extension) {
-        return server.getWorldPath(AUDIO_DATA).resolve(id.toString() + "." + extension);
+    public static synchronized SoundCatalog getCatalog(MinecraftServer server) {
+        if (catalog == null || catalog.getServer() != server) {
+            catalog = new SoundCatalog(server);
+            catalog.load();
+        }
+        return catalog;
     }
 
-    public static Path getExistingSoundFile(MinecraftServer server, UUID id) throws FileNotFoundException {
-        Path file = getSoundFile(server, id, AudioConverter.AudioType.MP3.getExtension());
-        if (Files.exists(file)) {
-            return file;
+    public static synchronized AudioStore getStore(MinecraftServer server) {
+        if (store == null || storeServer != server) {
+            if (store != null) {
+                store.close();
+            }
+            store = createStore(server);
+            storeServer = server;
         }
-        file = getSoundFile(server, id, AudioConverter.AudioType.WAV.getExtension());
-        if (Files.exists(file)) {
-            return file;
+        return store;
+    }
+
+    private static AudioStore createStore(MinecraftServer server) {
+        Path folder = getDataFolder(server);
+        FileAudioStore fileStore = new FileAudioStore(folder);
+        ServerConfig.StorageMode mode = AudioPlayer.SERVER_CONFIG.storageMode.get();
+        try {
+            if (mode.equals(ServerConfig.StorageMode.PACK)) {
+                PackAudioStore packStore = new PackAudioStore(folder.resolve(PackAudioStore.PACK_FOLDER), AudioPlayer.SERVER_CONFIG.packSegmentMegabytes.get() * 1024L * 1024L, fileStore);
+                packStore.scheduleCompaction(AudioPlayer.SCHEDULED_EXECUTOR);
+                return packStore;
+            }
+            if (mode.equals(ServerConfig.StorageMode.SHARED)) {
+                String sharedPath = AudioPlayer.SERVER_CONFIG.sharedStoragePath.get();
+                if (sharedPath.isBlank()) {
+                    throw new IOException("No shared storage path set");
+                }
+                // Audio in the world folder stays available and is used as the local copy of the shared library
+                return new CachingAudioStore(new SharedAudioStore(Path.of(sharedPath)), fileStore, folder);
+            }
+        } catch (IOException e) {
+            AudioPlayer.LOGGER.error("Failed to open {} audio storage, using separate files instead", mode, e);
         }
-        throw new FileNotFoundException("Audio does not exist");
+        return fileStore;
     }
 
-    public static Path getUploadFolder() {
-        return FabricLoader.getInstance().getGameDir().resolve("audioplayer_uploads");
+    public static synchronized void closeStorage() {
+        if (catalog != null) {
+            catalog.flush();
+            catalog = null;
+        }
+        if (store != null) {
+            store.close();
+            store = null;
+            storeServer = null;
+        }
     }
 
-    public static void saveSound(MinecraftServer server, UUID id, String url) throws UnsupportedAudioFileException, IOException {
-        byte[] data = download(new URL(url), AudioPlayer.SERVER_CONFIG.maxUploadSize.get());
+    // Returns -1 if the audio is not in the catalog yet or the length is unknown or only estimated
+    // The length of such audio is checked once it is loaded
+    public static float getLengthSeconds(MinecraftServer server, UUID id) {
+        SoundCatalog.Entry entry = getCatalog(server).getCached(id);
+        if (entry == null || entry.estimated()) {
+            return -1F;
+        }
+        return entry.getLengthSeconds();
+    }
 
-        AudioConverter.AudioType audioType = AudioConverter.getAudioType(data);
-        checkExtensionAllowed(audioType);
+    public static boolean isContentHash(String key) {
+        return key.length() == 64 && key.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+    }
 
-        Path soundFile = getSoundFile(server, id, audioType.getExtension());
-        if (Files.exists(soundFile)) {
-            throw new FileAlreadyExistsException("This audio already exists");
+    private static void loadSound(MinecraftServer server, String key, SoundCatalog.Entry entry, EncodedAudio audio) throws Exception {
+        loadSound(getStore(server), getDataFolder(server), key, entry, audio, AudioPlayer.SERVER_CONFIG.memoryMappedAudio.get());
+    }
+
+    static void loadSound(AudioStore store, Path tempFolder, String key, SoundCatalog.Entry entry, EncodedAudio audio, boolean memoryMapped) throws Exception {
+        if (store.exists(key, PCM_EXTENSION)) {
+            loadPcm(store, key, audio, memoryMapped);
+            return;
+        }
+        if (!store.exists(key, entry.format())) {
+            throw new FileNotFoundException("Audio does not exist");
         }
-        Files.createDirectories(soundFile.getParent());
+        // Extracted and cached files don't have the original file extension, so the format comes from the catalog
+        AudioConverter.AudioType audioType = AudioConverter.AudioType.fromExtension(entry.format());
+        Path file = store.getPath(key, entry.format());
+        Path extractedFile = null;
+        Path tempFile = null;
+        try {
+            if (file == null) {
+                extractedFile = Files.createTempFile(tempFolder, "extract", "." + entry.format() + ".tmp");
+                try (InputStream inputStream = store.open(key, entry.format())) {
+                    Files.copy(inputStream, extractedFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                file = extractedFile;
+            }
+            audio.setExpectedSampleCount(entry.durationSamples() >= 0L ? entry.durationSamples() : AudioConverter.getExpectedSampleCount(file));
+            if (!memoryMapped) {
+                decode(file, audioType, audio, null);
+                return;
+            }
+
+            // Audio that was uploaded before PCM files were stored gets converted on its first play
+            tempFile = Files.createTempFile(tempFolder, key, "." + PCM_EXTENSION + ".tmp");
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                decode(file, audioType, audio, outputStream);
+            }
+            store.store(key, PCM_EXTENSION, tempFile);
+        } finally {
+            if (extractedFile != null) {
+                Files.deleteIfExists(extractedFile);
+            }
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    private static void loadPcm(AudioStore store, String key, EncodedAudio audio, boolean memoryMapped) throws IOException {
+        if (memoryMapped) {
+            EncodedAudio.encode(AudioConverter.asPcm(store.map(key, PCM_EXTENSION)), audio);
+            return;
+        }
+        try (AudioInputStream stream = AudioConverter.getPcmStream(store.open(key, PCM_EXTENSION), store.size(key, PCM_EXTENSION))) {
+            audio.setExpectedSampleCount(stream.getFrameLength());
+            EncodedAudio.encode(stream, audio, null);
+        }
+    }
+
+    private static void decode(Path file, @Nullable AudioConverter.AudioType audioType, EncodedAudio audio, @Nullable OutputStream pcmOutput) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream stream;
+        try {
+            stream = AudioConverter.getStream(file, audioType);
+        } catch (UnsupportedAudioFileException e) {
+            AudioPlayer.LOGGER.warn("Error streaming audio file {}, decoding the whole file instead", file.getFileName());
+            short[] pcm = AudioConverter.convert(file, audioType);
+            if (pcmOutput != null) {
+                pcmOutput.write(Plugin.voicechatApi.getAudioConverter().shortsToBytes(pcm));
+            }
+            EncodedAudio.encode(pcm, audio);
+            return;
+        }
+        ConvertEvent event = new ConvertEvent();
+        event.begin();
+        try (stream) {
+            EncodedAudio.encode(stream, audio, pcmOutput);
+        }
+        event.commit(file, audio.getSampleCount() * 2L);
+    }
+
+    public static Path getDataFolder(MinecraftServer server) {
+        return server.getWorldPath(AUDIO_DATA);
+    }
 
-        try (OutputStream outputStream = Files.newOutputStream(soundFile)) {
-            IOUtils.write(data, outputStream);
+    public static boolean exists(MinecraftServer server, UUID id) {
+        return getCatalog(server).get(id) != null;
+    }
+
+    public static Path getUploadFolder() {
+        return FabricLoader.getInstance().getGameDir().resolve("audioplayer_uploads");
+    }
+
+    public static void saveSound(MinecraftServer server, UUID id, String url) throws UnsupportedAudioFileException, IOException {
+        saveSound(server, id, url, null);
+    }
+
+    public static void saveSound(MinecraftServer server, UUID id, String url, @Nullable DownloadListener listener) throws UnsupportedAudioFileException, IOException {
+        // Downloads use the same folder as the other temporary files, so they never show up as server file uploads
+        Path folder = getDataFolder(server);
+        Files.createDirectories(folder);
+        Path tempFile = Files.createTempFile(folder, "download-", ".tmp");
+        try {
+            download(new URL(url), tempFile, AudioPlayer.SERVER_CONFIG.maxUploadSize.get(), listener);
+            AudioConverter.AudioType audioType = AudioConverter.detectAudioType(tempFile);
+            checkExtensionAllowed(audioType);
+            importSound(server, id, tempFile, audioType, listener);
+        } finally {
+            Files.deleteIfExists(tempFile);
         }
     }
 
     public static void saveSound(MinecraftServer server, UUID id, Path file) throws UnsupportedAudioFileException, IOException {
+        saveSound(server, id, file, null);
+    }
+
+    public static void saveSound(MinecraftServer server, UUID id, Path file, @Nullable DownloadListener listener) throws UnsupportedAudioFileException, IOException {
         if (!Files.exists(file) || !Files.isRegularFile(file)) {
             throw new NoSuchFileException("The file %s does not exist".formatted(file.toString()));
         }
@@ -83,13 +267,89 @@ public class AudioManager {
         AudioConverter.AudioType audioType = AudioConverter.getAudioType(file);
         checkExtensionAllowed(audioType);
 
-        Path soundFile = getSoundFile(server, id, audioType.getExtension());
-        if (Files.exists(soundFile)) {
+        importSound(server, id, file, audioType, listener);
+    }
+
+    private static void importSound(MinecraftServer server, UUID id, Path file, AudioConverter.AudioType audioType, @Nullable DownloadListener listener) throws UnsupportedAudioFileException, IOException {
+        if (exists(server, id)) {
             throw new FileAlreadyExistsException("This audio already exists");
         }
-        Files.createDirectories(soundFile.getParent());
 
-        Files.move(file, soundFile);
+        String hash = hash(file);
+        checkCancelled(listener);
+        AudioStore store = getStore(server);
+        Path folder = getDataFolder(server);
+        Files.createDirectories(folder);
+
+        if (store.exists(hash, audioType.getExtension())) {
+            // The same audio was already uploaded, so the new ID just refers to the existing file
+            Files.delete(file);
+        } else {
+            Path pcmFile = transcode(file, audioType, folder);
+            try {
+                checkCancelled(listener);
+                store.store(hash, PCM_EXTENSION, pcmFile);
+            } finally {
+                Files.deleteIfExists(pcmFile);
+            }
+            try {
+                store.store(hash, audioType.getExtension(), file);
+            } catch (IOException e) {
+                store.delete(hash, PCM_EXTENSION);
+                throw e;
+            }
+        }
+
+        Path aliasFile = Files.createTempFile(folder, id.toString(), "." + ALIAS_EXTENSION + ".tmp");
+        try {
+            Files.writeString(aliasFile, hash);
+            store.store(id.toString(), ALIAS_EXTENSION, aliasFile);
+        } finally {
+            Files.deleteIfExists(aliasFile);
+        }
+        if (listener != null) {
+            // Cancelling is no longer possible after this, so a cancelled upload never ends up in the catalog
+            listener.onSave();
+        }
+        getCatalog(server).put(id, new SoundCatalog.Entry(audioType.getExtension(), store.size(hash, audioType.getExtension()), store.size(hash, PCM_EXTENSION) / 2L, false, hash, System.currentTimeMillis()));
+    }
+
+    private static void checkCancelled(@Nullable DownloadListener listener) throws IOException {
+        if (listener != null) {
+            listener.checkCancelled();
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static Path transcode(Path source, AudioConverter.AudioType audioType, Path folder) throws UnsupportedAudioFileException, IOException {
+        Path pcmFile = Files.createTempFile(folder, "transcode", "." + PCM_EXTENSION + ".tmp");
+        try {
+            long size;
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(pcmFile))) {
+                size = AudioConverter.writePcm(source, audioType, outputStream);
+            } catch (IOException e) {
+                throw new UnsupportedAudioFileException("Invalid or corrupt audio file: %s".formatted(e.getMessage()));
+            }
+            if (size <= 0L) {
+                throw new UnsupportedAudioFileException("Audio file does not contain any audio");
+            }
+            return pcmFile;
+        } catch (Exception e) {
+            Files.deleteIfExists(pcmFile);
+            throw e;
+        }
     }
 
     public static void checkExtensionAllowed(@Nullable AudioConverter.AudioType audioType) throws UnsupportedAudioFileException {
@@ -108,22 +368,40 @@ public class AudioManager {
         }
     }
 
-    private static byte[] download(URL url, long limit) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        BufferedInputStream bis = new BufferedInputStream(url.openStream());
-
-        int nRead;
-        byte[] data = new byte[32768];
+    private static void download(URL url, Path file, long limit, @Nullable DownloadListener listener) throws IOException {
+        URLConnection connection = url.openConnection();
+        // Without timeouts a stalled server blocks the upload thread forever, as interrupting it doesn't stop socket reads
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        long contentLength = connection.getContentLengthLong();
+        if (contentLength > limit) {
+            throw new IOException("Maximum file size of %sMB exceeded".formatted((int) (((float) limit) / 1_000_000F)));
+        }
 
-        while ((nRead = bis.read(data, 0, data.length)) != -1) {
-            bos.write(data, 0, nRead);
-            if (bos.size() > limit) {
-                bis.close();
-                throw new IOException("Maximum file size of %sMB exceeded".formatted((int) (((float) limit) / 1_000_000F)));
+        try (InputStream inputStream = connection.getInputStream(); OutputStream outputStream = Files.newOutputStream(file)) {
+            int nRead;
+            long size = 0L;
+            byte[] data = new byte[32768];
+
+            while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
+                size += nRead;
+                if (size > limit) {
+                    throw new IOException("Maximum file size of %sMB exceeded".formatted((int) (((float) limit) / 1_000_000F)));
+                }
+                outputStream.write(data, 0, nRead);
+                if (listener != null) {
+                    listener.onProgress(size, contentLength);
+                }
             }
         }
-        bis.close();
-        return bos.toByteArray();
+    }
+
+    public interface DownloadListener {
+        void onProgress(long downloadedBytes, long totalBytes) throws IOException;
+
+        void checkCancelled() throws IOException;
+
+        void onSave() throws IOException;
     }
 
     @Nullable
@@ -229,9 +507,4 @@ public class AudioManager {
         return true;
     }
 
-    public static float getLengthSeconds(short[] audio) {
-        return (float) audio.length / AudioConverter.FORMAT.getSampleRate();
-    }
-
-
 }
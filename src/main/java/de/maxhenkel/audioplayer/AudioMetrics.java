@@ -0,0 +1,147 @@
+package de.maxhenkel.audioplayer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class AudioMetrics {
+
+    public static final AudioMetrics INSTANCE = new AudioMetrics();
+
+    private static final long FRAME_RATE_TIMEOUT_NS = 2_000_000_000L;
+
+    private final LongAdder cacheHits;
+    private final LongAdder cacheJoins;
+    private final LongAdder cacheMisses;
+    private final LatencyHistogram decodeTime;
+    private final LongAdder framesSent;
+    private final LongAdder lateFrames;
+    private final LongAdder missedDeadlines;
+    private final LatencyHistogram lookahead;
+    private final LongAdder underruns;
+
+    private long lastFramesSent;
+    private volatile long frameRateSampleTime;
+    private volatile float framesPerSecond;
+
+    private AudioMetrics() {
+        this.cacheHits = new LongAdder();
+        this.cacheJoins = new LongAdder();
+        this.cacheMisses = new LongAdder();
+        this.decodeTime = new LatencyHistogram();
+        this.framesSent = new LongAdder();
+        this.lateFrames = new LongAdder();
+        this.missedDeadlines = new LongAdder();
+        this.lookahead = new LatencyHistogram();
+        this.underruns = new LongAdder();
+    }
+
+    public void onCacheHit() {
+        cacheHits.increment();
+    }
+
+    // The audio was already being loaded by another lookup
+    public void onCacheJoin() {
+        cacheJoins.increment();
+    }
+
+    public void onCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    public void onDecoded(long nanos) {
+        decodeTime.record(nanos);
+    }
+
+    public void onFrameSent() {
+        framesSent.increment();
+    }
+
+    public void onLateFrames(int frames) {
+        lateFrames.add(frames);
+    }
+
+    public void onMissedDeadline() {
+        missedDeadlines.increment();
+    }
+
+    // The number of encoded frames a player has left while its audio is still loading
+    public void onLookahead(int frames) {
+        lookahead.record(frames);
+    }
+
+    // A player had to wait because its next frame wasn't encoded yet
+    public void onUnderrun() {
+        underruns.increment();
+    }
+
+    // Only called by the playback thread
+    void sampleFrameRate() {
+        long time = System.nanoTime();
+        long frames = framesSent.sum();
+        long lastTime = frameRateSampleTime;
+        if (lastTime != 0L && time > lastTime) {
+            framesPerSecond = (float) ((double) (frames - lastFramesSent) * 1_000_000_000D / (double) (time - lastTime));
+        }
+        lastFramesSent = frames;
+        frameRateSampleTime = time;
+    }
+
+    // Only called by the playback thread
+    void resetFrameRate() {
+        frameRateSampleTime = 0L;
+        framesPerSecond = 0F;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheJoins() {
+        return cacheJoins.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public float getCacheHitRate() {
+        long hits = cacheHits.sum();
+        long total = hits + cacheJoins.sum() + cacheMisses.sum();
+        if (total <= 0L) {
+            return 0F;
+        }
+        return (float) hits / (float) total;
+    }
+
+    public LatencyHistogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public long getLateFrames() {
+        return lateFrames.sum();
+    }
+
+    public long getMissedDeadlines() {
+        return missedDeadlines.sum();
+    }
+
+    public LatencyHistogram getLookahead() {
+        return lookahead;
+    }
+
+    public long getUnderruns() {
+        return underruns.sum();
+    }
+
+    public float getFramesPerSecond() {
+        long sampleTime = frameRateSampleTime;
+        if (sampleTime == 0L || System.nanoTime() - sampleTime > FRAME_RATE_TIMEOUT_NS) {
+            return 0F;
+        }
+        return framesPerSecond;
+    }
+
+}
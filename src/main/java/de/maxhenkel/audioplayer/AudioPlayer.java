@@ -9,6 +9,8 @@ import de.maxhenkel.audioplayer.config.ServerConfig;
 import de.maxhenkel.configbuilder.ConfigBuilder;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.loader.api.FabricLoader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -53,6 +55,16 @@ public class AudioPlayer implements ModInitializer {
             LOGGER.warn("Failed to create upload folder", e);
         }
 
-        AUDIO_CACHE = new AudioCache(SERVER_CONFIG.cacheSize.get());
+        AUDIO_CACHE = new AudioCache(SERVER_CONFIG.cacheMaxMegabytes.get() * 1024L * 1024L);
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> ListenerIndex.instance().update(server));
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            SoundCatalog catalog = AudioManager.getCatalog(server);
+            SCHEDULED_EXECUTOR.execute(catalog::scan);
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            ListenerIndex.instance().clear();
+            AudioManager.closeStorage();
+        });
     }
 }
@@ -18,12 +18,18 @@ public class AudioPlayerPermissionManager implements PermissionManager<CommandSo
     private static final Permission APPLY_PERMISSION = new Permission("audioplayer.apply", PermissionType.EVERYONE);
     private static final Permission APPLY_ANNOUNCER_PERMISSION = new AnnouncerPermission("audioplayer.apply_announcer", PermissionType.EVERYONE);
     private static final Permission PLAY_COMMAND_PERMISSION = new Permission("audioplayer.play_command", PermissionType.OPS);
+    private static final Permission MANAGE_UPLOADS_PERMISSION = new Permission("audioplayer.manage_uploads", PermissionType.OPS);
+    private static final Permission MANAGE_STORAGE_PERMISSION = new Permission("audioplayer.manage_storage", PermissionType.OPS);
+    private static final Permission STATS_PERMISSION = new Permission("audioplayer.stats", PermissionType.OPS);
 
     private static final List<Permission> PERMISSIONS = List.of(
             UPLOAD_PERMISSION,
             APPLY_PERMISSION,
             APPLY_ANNOUNCER_PERMISSION,
-            PLAY_COMMAND_PERMISSION
+            PLAY_COMMAND_PERMISSION,
+            MANAGE_UPLOADS_PERMISSION,
+            MANAGE_STORAGE_PERMISSION,
+            STATS_PERMISSION
     );
 
     @Override
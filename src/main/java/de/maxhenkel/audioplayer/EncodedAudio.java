@@ -0,0 +1,288 @@
+package de.maxhenkel.audioplayer;
+
+import de.maxhenkel.audioplayer.jfr.FrameEncodeEvent;
+import de.maxhenkel.voicechat.api.opus.OpusEncoder;
+
+import javax.annotation.Nullable;
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+public class EncodedAudio {
+
+    public static final int PLAYABLE_FRAMES = 5;
+    private static final long ARRAY_OVERHEAD = 16L;
+    // Samples below about -72 dBFS are considered silent
+    private static final int SILENCE_THRESHOLD = 8;
+    // Shorter gaps are encoded normally, so the channel isn't flushed in the middle of the audio
+    private static final int MIN_SILENT_FRAMES = 10;
+    private static final byte[] SILENCE = new byte[0];
+
+    private volatile byte[][] frames;
+    private volatile int availableFrames;
+    private volatile int sampleCount;
+    private volatile long expectedSampleCount;
+    private volatile boolean complete;
+    @Nullable
+    private volatile Throwable error;
+    private long size;
+    @Nullable
+    private Runnable onPlayable;
+
+    public EncodedAudio() {
+        this.frames = new byte[64][];
+        this.expectedSampleCount = -1L;
+        this.size = ARRAY_OVERHEAD;
+    }
+
+    public static EncodedAudio encode(short[] audio) {
+        EncodedAudio encodedAudio = new EncodedAudio();
+        encode(audio, encodedAudio);
+        return encodedAudio;
+    }
+
+    public static void encode(short[] audio, EncodedAudio target) {
+        encode(ShortBuffer.wrap(audio), target);
+    }
+
+    public static void encode(ShortBuffer audio, EncodedAudio target) {
+        int sampleCount = audio.remaining();
+        target.setExpectedSampleCount(sampleCount);
+        OpusEncoder encoder = Plugin.voicechatApi.createEncoder();
+        try {
+            AudioSupplier supplier = new AudioSupplier(audio);
+            FrameWriter writer = new FrameWriter(target, encoder);
+            short[] frame;
+            while ((frame = supplier.get()) != null) {
+                writer.write(frame);
+            }
+            writer.finish();
+            target.finish(sampleCount);
+        } finally {
+            encoder.close();
+        }
+    }
+
+    public static void encode(AudioInputStream stream, EncodedAudio target, @Nullable OutputStream pcmOutput) throws IOException {
+        OpusEncoder encoder = Plugin.voicechatApi.createEncoder();
+        try {
+            byte[] buffer = new byte[PacketAudioPlayer.FRAME_SIZE * 2];
+            short[] frame = new short[PacketAudioPlayer.FRAME_SIZE];
+            FrameWriter writer = new FrameWriter(target, encoder);
+            int sampleCount = 0;
+            int read;
+            while ((read = stream.readNBytes(buffer, 0, buffer.length)) > 0) {
+                if (pcmOutput != null) {
+                    pcmOutput.write(buffer, 0, read);
+                }
+                int samples = read / 2;
+                for (int i = 0; i < samples; i++) {
+                    frame[i] = (short) ((buffer[i * 2] & 0xFF) | (buffer[i * 2 + 1] << 8));
+                }
+                Arrays.fill(frame, samples, frame.length, (short) 0);
+                writer.write(frame);
+                sampleCount += samples;
+            }
+            writer.finish();
+            target.finish(sampleCount);
+        } finally {
+            encoder.close();
+        }
+    }
+
+    private static byte[] encodeFrame(OpusEncoder encoder, short[] frame) {
+        FrameEncodeEvent event = new FrameEncodeEvent();
+        event.begin();
+        byte[] encoded = encoder.encode(frame);
+        event.commit();
+        return encoded;
+    }
+
+    public void setOnPlayable(@Nullable Runnable onPlayable) {
+        this.onPlayable = onPlayable;
+    }
+
+    public void setExpectedSampleCount(long expectedSampleCount) {
+        this.expectedSampleCount = expectedSampleCount;
+        if (expectedSampleCount > 0L) {
+            long expectedFrames = (expectedSampleCount + PacketAudioPlayer.FRAME_SIZE - 1) / PacketAudioPlayer.FRAME_SIZE;
+            if (expectedFrames > frames.length && expectedFrames < Integer.MAX_VALUE) {
+                frames = Arrays.copyOf(frames, (int) expectedFrames);
+            }
+        }
+    }
+
+    public void addFrame(byte[] frame) {
+        int index = availableFrames;
+        byte[][] currentFrames = frames;
+        if (index >= currentFrames.length) {
+            currentFrames = Arrays.copyOf(currentFrames, currentFrames.length * 2);
+        }
+        currentFrames[index] = frame;
+        frames = currentFrames;
+        availableFrames = index + 1;
+        size += frame == SILENCE ? Long.BYTES : ARRAY_OVERHEAD + Long.BYTES + frame.length;
+        if (index + 1 == PLAYABLE_FRAMES) {
+            notifyPlayable();
+        }
+    }
+
+    public void finish(int sampleCount) {
+        this.sampleCount = sampleCount;
+        this.frames = Arrays.copyOf(frames, availableFrames);
+        this.complete = true;
+        notifyPlayable();
+    }
+
+    public void fail(Throwable error) {
+        this.error = error;
+    }
+
+    private void notifyPlayable() {
+        Runnable playable = onPlayable;
+        onPlayable = null;
+        if (playable != null) {
+            playable.run();
+        }
+    }
+
+    public byte[] getFrame(int index) {
+        return frames[index];
+    }
+
+    public static boolean isSilence(byte[] frame) {
+        return frame == SILENCE;
+    }
+
+    public int getAvailableFrames() {
+        return availableFrames;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public boolean isDone() {
+        return complete || error != null;
+    }
+
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    // Returns -1 if the audio is still loading and the length could not be determined beforehand
+    public float getLengthSeconds() {
+        if (complete) {
+            return (float) sampleCount / AudioConverter.FORMAT.getSampleRate();
+        }
+        if (expectedSampleCount > 0L) {
+            return (float) expectedSampleCount / AudioConverter.FORMAT.getSampleRate();
+        }
+        return -1F;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    // Replaces runs of silent frames with SILENCE, so they don't need to be encoded or sent
+    private static class FrameWriter {
+
+        private final EncodedAudio target;
+        private final OpusEncoder encoder;
+        private final short[][] pendingFrames;
+        private int pendingCount;
+        private boolean silent;
+
+        private FrameWriter(EncodedAudio target, OpusEncoder encoder) {
+            this.target = target;
+            this.encoder = encoder;
+            this.pendingFrames = new short[MIN_SILENT_FRAMES][];
+        }
+
+        private void write(short[] frame) {
+            if (!isSilent(frame)) {
+                if (silent) {
+                    // Players flush their channels on silence, so the next frame starts a new stream
+                    encoder.resetState();
+                    silent = false;
+                }
+                writePending();
+                target.addFrame(encodeFrame(encoder, frame));
+                return;
+            }
+            if (silent) {
+                target.addFrame(SILENCE);
+                return;
+            }
+            if (pendingFrames[pendingCount] == null) {
+                pendingFrames[pendingCount] = new short[frame.length];
+            }
+            System.arraycopy(frame, 0, pendingFrames[pendingCount], 0, frame.length);
+            pendingCount++;
+            if (pendingCount >= MIN_SILENT_FRAMES) {
+                for (int i = 0; i < pendingCount; i++) {
+                    target.addFrame(SILENCE);
+                }
+                pendingCount = 0;
+                silent = true;
+            }
+        }
+
+        private void finish() {
+            writePending();
+        }
+
+        private void writePending() {
+            for (int i = 0; i < pendingCount; i++) {
+                target.addFrame(encodeFrame(encoder, pendingFrames[i]));
+            }
+            pendingCount = 0;
+        }
+
+        private static boolean isSilent(short[] frame) {
+            for (short sample : frame) {
+                if (sample > SILENCE_THRESHOLD || sample < -SILENCE_THRESHOLD) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static class AudioSupplier implements Supplier<short[]> {
+
+        private final ShortBuffer audioData;
+        private final short[] frame;
+
+        public AudioSupplier(short[] audioData) {
+            this(ShortBuffer.wrap(audioData));
+        }
+
+        public AudioSupplier(ShortBuffer audioData) {
+            this.audioData = audioData;
+            this.frame = new short[PacketAudioPlayer.FRAME_SIZE];
+        }
+
+        @Override
+        public short[] get() {
+            if (!audioData.hasRemaining()) {
+                return null;
+            }
+
+            int length = Math.min(frame.length, audioData.remaining());
+            audioData.get(frame, 0, length);
+            Arrays.fill(frame, length, frame.length, (short) 0);
+            return frame;
+        }
+    }
+
+}
@@ -6,22 +6,31 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import net.minecraft.server.MinecraftServer;
 
+import javax.annotation.Nullable;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.UUID;
 
 public class Filebin {
 
     public static void downloadSound(MinecraftServer server, UUID sound) throws IOException, InterruptedException, UnsupportedAudioFileException {
+        downloadSound(server, sound, null);
+    }
+
+    public static void downloadSound(MinecraftServer server, UUID sound, @Nullable AudioManager.DownloadListener listener) throws IOException, InterruptedException, UnsupportedAudioFileException {
         String url = getBin(sound);
 
-        HttpClient client = HttpClient.newHttpClient();
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(AudioManager.CONNECT_TIMEOUT_MS))
+                .build();
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
+                .timeout(Duration.ofMillis(AudioManager.READ_TIMEOUT_MS))
                 .header("Accept", "application/json")
                 .build();
         HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
@@ -61,7 +70,7 @@ public class Filebin {
                 }
 
                 String filename = file.get("filename").getAsString();
-                AudioManager.saveSound(server, sound, url + "/" + filename);
+                AudioManager.saveSound(server, sound, url + "/" + filename, listener);
                 return;
             }
         }
@@ -0,0 +1,309 @@
+package de.maxhenkel.audioplayer;
+
+import de.maxhenkel.voicechat.api.VoicechatConnection;
+import de.maxhenkel.voicechat.api.VoicechatServerApi;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
+import net.minecraft.world.phys.Vec3;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class ListenerIndex {
+
+    // Updates refill the snapshot that isn't read anymore instead of building a new one every tick
+    private volatile Snapshot current;
+    private Snapshot spare;
+
+    public ListenerIndex() {
+        this.current = new Snapshot();
+        this.spare = new Snapshot();
+    }
+
+    public synchronized void update(MinecraftServer server) {
+        VoicechatServerApi api = Plugin.voicechatServerApi;
+        if (api == null) {
+            return;
+        }
+        Snapshot snapshot = beginUpdate();
+        if (snapshot == null) {
+            return;
+        }
+        for (ServerLevel level : server.getAllLevels()) {
+            List<ServerPlayer> players = level.players();
+            if (players.isEmpty()) {
+                continue;
+            }
+            LevelListeners levelListeners = snapshot.getLevel(level);
+            for (int i = 0; i < players.size(); i++) {
+                ServerPlayer player = players.get(i);
+                VoicechatConnection connection = api.getConnectionOf(player.getUUID());
+                if (connection == null || connection.isDisabled()) {
+                    continue;
+                }
+                Vec3 position = player.position();
+                levelListeners.add(player.getUUID(), connection, position.x, position.y, position.z);
+            }
+        }
+        publish(snapshot);
+    }
+
+    // Replaces all listeners with the given listeners of a single level
+    public synchronized void update(@Nullable ServerLevel level, List<Listener> listeners) {
+        Snapshot snapshot = beginUpdate();
+        if (snapshot == null) {
+            return;
+        }
+        LevelListeners levelListeners = snapshot.getLevel(level);
+        for (int i = 0; i < listeners.size(); i++) {
+            Listener listener = listeners.get(i);
+            levelListeners.add(listener.uuid, listener.connection, listener.x, listener.y, listener.z);
+        }
+        publish(snapshot);
+    }
+
+    // Returns null if the previous snapshot is still being read, so the listeners are only updated on the next tick
+    @Nullable
+    private Snapshot beginUpdate() {
+        if (spare.readers.get() > 0) {
+            return null;
+        }
+        spare.clear();
+        return spare;
+    }
+
+    private void publish(Snapshot snapshot) {
+        spare = current;
+        current = snapshot;
+    }
+
+    // Drops the levels and players of the stopped server
+    public synchronized void clear() {
+        current = new Snapshot();
+        spare = new Snapshot();
+    }
+
+    // Stops as soon as the visitor returns false
+    public void forEachListener(ServerLevel level, Vec3 pos, double range, Predicate<Listener> visitor) {
+        Snapshot snapshot = acquire();
+        try {
+            LevelListeners listeners = snapshot.levels.get(level);
+            if (listeners == null) {
+                return;
+            }
+            listeners.forEachInRange(pos.x, pos.y, pos.z, range, visitor);
+        } finally {
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    public boolean hasListener(ServerLevel level, Vec3 pos, double range) {
+        Snapshot snapshot = acquire();
+        try {
+            LevelListeners listeners = snapshot.levels.get(level);
+            if (listeners == null) {
+                return false;
+            }
+            return !listeners.forEachInRange(pos.x, pos.y, pos.z, range, listener -> false);
+        } finally {
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    // An update only refills a snapshot without readers, so a snapshot that was replaced while acquiring it is released again
+    private Snapshot acquire() {
+        while (true) {
+            Snapshot snapshot = current;
+            snapshot.readers.incrementAndGet();
+            if (snapshot == current) {
+                return snapshot;
+            }
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    // Listeners are reused by later updates, so visitors must not keep them
+    public static class Listener {
+        private UUID uuid;
+        private VoicechatConnection connection;
+        private double x;
+        private double y;
+        private double z;
+
+        public Listener(UUID uuid, VoicechatConnection connection, double x, double y, double z) {
+            set(uuid, connection, x, y, z);
+        }
+
+        private void set(UUID uuid, VoicechatConnection connection, double x, double y, double z) {
+            this.uuid = uuid;
+            this.connection = connection;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        public UUID uuid() {
+            return uuid;
+        }
+
+        public VoicechatConnection connection() {
+            return connection;
+        }
+
+        public double x() {
+            return x;
+        }
+
+        public double y() {
+            return y;
+        }
+
+        public double z() {
+            return z;
+        }
+    }
+
+    private static class Snapshot {
+        private final Map<ServerLevel, LevelListeners> levels;
+        // Kept as a list as well, so clearing doesn't need to allocate iterators
+        private final List<LevelListeners> levelList;
+        private final AtomicInteger readers;
+
+        private Snapshot() {
+            this.levels = new HashMap<>();
+            this.levelList = new ArrayList<>();
+            this.readers = new AtomicInteger();
+        }
+
+        private LevelListeners getLevel(ServerLevel level) {
+            LevelListeners listeners = levels.get(level);
+            if (listeners == null) {
+                listeners = new LevelListeners();
+                levels.put(level, listeners);
+                levelList.add(listeners);
+            }
+            return listeners;
+        }
+
+        private void clear() {
+            for (int i = 0; i < levelList.size(); i++) {
+                levelList.get(i).clear();
+            }
+        }
+    }
+
+    private static class LevelListeners {
+        private final List<Listener> all;
+        private final Long2ObjectMap<List<Listener>> sections;
+        // Listeners and section lists are kept when clearing, so refilling them doesn't allocate
+        private final List<Listener> listenerPool;
+        private final List<List<Listener>> sectionPool;
+        private int usedSections;
+
+        private LevelListeners() {
+            this.all = new ArrayList<>();
+            this.sections = new Long2ObjectOpenHashMap<>();
+            this.listenerPool = new ArrayList<>();
+            this.sectionPool = new ArrayList<>();
+        }
+
+        private void add(UUID uuid, VoicechatConnection connection, double x, double y, double z) {
+            Listener listener;
+            if (all.size() < listenerPool.size()) {
+                listener = listenerPool.get(all.size());
+                listener.set(uuid, connection, x, y, z);
+            } else {
+                listener = new Listener(uuid, connection, x, y, z);
+                listenerPool.add(listener);
+            }
+            all.add(listener);
+
+            long sectionKey = SectionPos.asLong(toSection(x), toSection(y), toSection(z));
+            List<Listener> section = sections.get(sectionKey);
+            if (section == null) {
+                if (usedSections < sectionPool.size()) {
+                    section = sectionPool.get(usedSections);
+                } else {
+                    section = new ArrayList<>();
+                    sectionPool.add(section);
+                }
+                usedSections++;
+                sections.put(sectionKey, section);
+            }
+            section.add(listener);
+        }
+
+        private void clear() {
+            all.clear();
+            sections.clear();
+            for (int i = 0; i < usedSections; i++) {
+                sectionPool.get(i).clear();
+            }
+            usedSections = 0;
+        }
+
+        // Stops and returns false as soon as the visitor returns false
+        private boolean forEachInRange(double x, double y, double z, double range, Predicate<Listener> visitor) {
+            double rangeSqr = range * range;
+            int minX = toSection(x - range);
+            int minY = toSection(y - range);
+            int minZ = toSection(z - range);
+            int maxX = toSection(x + range);
+            int maxY = toSection(y + range);
+            int maxZ = toSection(z + range);
+            long sectionCount = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+
+            // Large ranges cover more sections than there are listeners, so checking every listener is cheaper
+            if (sectionCount > all.size()) {
+                return visitInRange(all, x, y, z, rangeSqr, visitor);
+            }
+
+            for (int sx = minX; sx <= maxX; sx++) {
+                for (int sy = minY; sy <= maxY; sy++) {
+                    for (int sz = minZ; sz <= maxZ; sz++) {
+                        List<Listener> section = sections.get(SectionPos.asLong(sx, sy, sz));
+                        if (section != null && !visitInRange(section, x, y, z, rangeSqr, visitor)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        // Uses an index instead of an iterator, since this runs for every playing audio player
+        private static boolean visitInRange(List<Listener> listeners, double x, double y, double z, double rangeSqr, Predicate<Listener> visitor) {
+            for (int i = 0; i < listeners.size(); i++) {
+                Listener listener = listeners.get(i);
+                double dx = listener.x - x;
+                double dy = listener.y - y;
+                double dz = listener.z - z;
+                if (dx * dx + dy * dy + dz * dz <= rangeSqr && !visitor.test(listener)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int toSection(double coordinate) {
+            return SectionPos.blockToSectionCoord(Mth.floor(coordinate));
+        }
+    }
+
+    private static ListenerIndex instance;
+
+    public static synchronized ListenerIndex instance() {
+        if (instance == null) {
+            instance = new ListenerIndex();
+        }
+        return instance;
+    }
+
+}
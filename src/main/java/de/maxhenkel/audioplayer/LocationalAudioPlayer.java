@@ -0,0 +1,53 @@
+package de.maxhenkel.audioplayer;
+
+import de.maxhenkel.voicechat.api.audiochannel.LocationalAudioChannel;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.phys.Vec3;
+
+public class LocationalAudioPlayer extends PacketAudioPlayer {
+
+    private static final int LISTENER_UPDATE_INTERVAL = 5;
+
+    private final LocationalAudioChannel channel;
+    private final ServerLevel level;
+    private final Vec3 pos;
+    private final float distance;
+    private boolean listenersInRange;
+    private int frameCounter;
+
+    public LocationalAudioPlayer(EncodedAudio audio, LocationalAudioChannel channel, ServerLevel level, Vec3 pos, float distance) {
+        super(audio);
+        this.channel = channel;
+        this.level = level;
+        this.pos = pos;
+        this.distance = distance;
+    }
+
+    @Override
+    protected boolean hasListeners() {
+        if (frameCounter++ % LISTENER_UPDATE_INTERVAL == 0) {
+            boolean inRange = ListenerIndex.instance().hasListener(level, pos, distance + 1F);
+            if (listenersInRange && !inRange) {
+                channel.flush();
+            }
+            listenersInRange = inRange;
+        }
+        return listenersInRange;
+    }
+
+    @Override
+    protected void sendFrame(byte[] frame) {
+        channel.send(frame);
+    }
+
+    @Override
+    protected void flush() {
+        channel.flush();
+    }
+
+    @Override
+    protected void onStop() {
+        channel.flush();
+    }
+
+}
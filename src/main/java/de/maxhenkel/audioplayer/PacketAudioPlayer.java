@@ -0,0 +1,129 @@
+package de.maxhenkel.audioplayer;
+
+import javax.annotation.Nullable;
+
+public abstract class PacketAudioPlayer implements de.maxhenkel.voicechat.api.audiochannel.AudioPlayer {
+
+    public static final long FRAME_SIZE_NS = 20_000_000;
+    public static final int SAMPLE_RATE = 48000;
+    public static final int FRAME_SIZE = (SAMPLE_RATE / 1000) * 20;
+
+    protected final EncodedAudio audio;
+    private int framePosition;
+    private int maxFrames;
+    private boolean silent;
+    private volatile boolean started;
+    private volatile boolean stopRequested;
+    private volatile boolean stopped;
+    @Nullable
+    private volatile Runnable onStopped;
+
+    public PacketAudioPlayer(EncodedAudio audio) {
+        this.audio = audio;
+        this.maxFrames = Integer.MAX_VALUE;
+    }
+
+    public void setMaxLengthSeconds(int maxLengthSeconds) {
+        this.maxFrames = (int) Math.min((long) maxLengthSeconds * SAMPLE_RATE / FRAME_SIZE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void startPlaying() {
+        if (started) {
+            return;
+        }
+        started = true;
+        PlaybackScheduler.instance().schedule(this);
+    }
+
+    @Override
+    public void stopPlaying() {
+        stopRequested = true;
+    }
+
+    @Override
+    public boolean isStarted() {
+        return started;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return started && !stopped;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    @Override
+    public void setOnStopped(Runnable onStopped) {
+        this.onStopped = onStopped;
+    }
+
+    protected void onStart() {
+
+    }
+
+    // Called once per frame before it gets sent
+    protected boolean hasListeners() {
+        return true;
+    }
+
+    protected abstract void sendFrame(byte[] frame);
+
+    // Called at the start of silence, which isn't sent
+    protected abstract void flush();
+
+    protected abstract void onStop();
+
+    void start() {
+        onStart();
+    }
+
+    boolean tick() {
+        if (stopRequested || framePosition >= maxFrames) {
+            return false;
+        }
+        int availableFrames = audio.getAvailableFrames();
+        if (framePosition >= availableFrames) {
+            if (audio.isDone()) {
+                return false;
+            }
+            // Wait for the next frame if the audio is still loading
+            AudioMetrics.INSTANCE.onUnderrun();
+            return true;
+        }
+        if (!audio.isComplete()) {
+            AudioMetrics.INSTANCE.onLookahead(availableFrames - framePosition);
+        }
+        // Frames nobody can hear are skipped, but still advance the position to stay in sync
+        if (hasListeners()) {
+            byte[] frame = audio.getFrame(framePosition);
+            if (EncodedAudio.isSilence(frame)) {
+                if (!silent) {
+                    flush();
+                    silent = true;
+                }
+            } else {
+                silent = false;
+                sendFrame(frame);
+                AudioMetrics.INSTANCE.onFrameSent();
+            }
+        }
+        framePosition++;
+        return true;
+    }
+
+    void stop() {
+        try {
+            onStop();
+        } finally {
+            stopped = true;
+            if (onStopped != null) {
+                onStopped.run();
+            }
+        }
+    }
+
+}
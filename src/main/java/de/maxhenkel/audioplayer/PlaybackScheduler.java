@@ -0,0 +1,159 @@
+package de.maxhenkel.audioplayer;
+
+import de.maxhenkel.audioplayer.jfr.PlaybackTickEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+public class PlaybackScheduler implements Runnable {
+
+    private static final int MAX_CATCH_UP_FRAMES = 5;
+    private static final int FRAMES_PER_SECOND = (int) (1_000_000_000L / PacketAudioPlayer.FRAME_SIZE_NS);
+
+    private final Thread thread;
+    private final Queue<PacketAudioPlayer> pending;
+    private final List<PacketAudioPlayer> active;
+    // Only used by the playback thread and reused for every tick, so the clock doesn't allocate
+    private final PlaybackTickEvent tickEvent;
+    private volatile int activeCount;
+
+    public PlaybackScheduler() {
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.active = new ArrayList<>();
+        this.tickEvent = new PlaybackTickEvent();
+        this.thread = new Thread(this, "AudioPlayerPlayback");
+        this.thread.setDaemon(true);
+        this.thread.setUncaughtExceptionHandler((t, e) -> {
+            AudioPlayer.LOGGER.error("Uncaught exception in thread {}", t.getName(), e);
+        });
+        this.thread.start();
+    }
+
+    public void schedule(PacketAudioPlayer player) {
+        pending.add(player);
+        LockSupport.unpark(thread);
+    }
+
+    public int getActivePlayers() {
+        return activeCount;
+    }
+
+    public int getPendingPlayers() {
+        return pending.size();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            admitPending();
+            if (active.isEmpty()) {
+                AudioMetrics.INSTANCE.resetFrameRate();
+                LockSupport.park(this);
+                continue;
+            }
+            runClock();
+        }
+    }
+
+    private void runClock() {
+        long startTime = System.nanoTime();
+        long tick = 0L;
+        AudioMetrics.INSTANCE.sampleFrameRate();
+
+        while (true) {
+            admitPending();
+            if (active.isEmpty()) {
+                return;
+            }
+            long lateness = System.nanoTime() - (startTime + tick * PacketAudioPlayer.FRAME_SIZE_NS);
+            if (lateness > PacketAudioPlayer.FRAME_SIZE_NS) {
+                AudioMetrics.INSTANCE.onMissedDeadline();
+                AudioMetrics.INSTANCE.onLateFrames(active.size());
+            }
+            tickEvent.begin();
+            int players = active.size();
+            tickPlayers();
+            if (tickEvent.shouldCommit()) {
+                tickEvent.players = players;
+                tickEvent.lateness = Math.max(lateness, 0L);
+                tickEvent.commit();
+            }
+            tick++;
+            if (tick % FRAMES_PER_SECOND == 0L) {
+                AudioMetrics.INSTANCE.sampleFrameRate();
+            }
+
+            long deadline = startTime + tick * PacketAudioPlayer.FRAME_SIZE_NS;
+            long waitNanos = deadline - System.nanoTime();
+            if (waitNanos < -MAX_CATCH_UP_FRAMES * PacketAudioPlayer.FRAME_SIZE_NS) {
+                // Don't send a huge burst of packets after long stalls
+                startTime -= waitNanos;
+                continue;
+            }
+            while (waitNanos > 0L) {
+                LockSupport.parkNanos(this, waitNanos);
+                waitNanos = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    private void admitPending() {
+        PacketAudioPlayer player;
+        while ((player = pending.poll()) != null) {
+            try {
+                player.start();
+                active.add(player);
+            } catch (Exception e) {
+                AudioPlayer.LOGGER.error("Failed to start audio player", e);
+                stopPlayer(player);
+            }
+        }
+        activeCount = active.size();
+    }
+
+    // Removes stopped players in place, so ticking doesn't allocate
+    private void tickPlayers() {
+        int size = active.size();
+        int playingCount = 0;
+        for (int i = 0; i < size; i++) {
+            PacketAudioPlayer player = active.get(i);
+            boolean playing;
+            try {
+                playing = player.tick();
+            } catch (Exception e) {
+                AudioPlayer.LOGGER.error("Error while playing audio", e);
+                playing = false;
+            }
+            if (playing) {
+                active.set(playingCount++, player);
+            } else {
+                stopPlayer(player);
+            }
+        }
+        for (int i = size - 1; i >= playingCount; i--) {
+            active.remove(i);
+        }
+        activeCount = playingCount;
+    }
+
+    private void stopPlayer(PacketAudioPlayer player) {
+        try {
+            player.stop();
+        } catch (Exception e) {
+            AudioPlayer.LOGGER.error("Failed to stop audio player", e);
+        }
+    }
+
+    private static PlaybackScheduler instance;
+
+    public static synchronized PlaybackScheduler instance() {
+        if (instance == null) {
+            instance = new PlaybackScheduler();
+        }
+        return instance;
+    }
+
+}
@@ -1,9 +1,9 @@
 package de.maxhenkel.audioplayer;
 
+import de.maxhenkel.audioplayer.jfr.PlaybackStartEvent;
 import de.maxhenkel.voicechat.api.Player;
 import de.maxhenkel.voicechat.api.VoicechatConnection;
 import de.maxhenkel.voicechat.api.VoicechatServerApi;
-import de.maxhenkel.voicechat.api.audiochannel.AudioChannel;
 import de.maxhenkel.voicechat.api.audiochannel.LocationalAudioChannel;
 import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.Component;
@@ -14,28 +14,49 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class PlayerManager {
 
+    private static final SoundLookup AUDIO_MANAGER = new SoundLookup() {
+        @Override
+        public float getLengthSeconds(ServerLevel level, UUID sound) {
+            return AudioManager.getLengthSeconds(level.getServer(), sound);
+        }
+
+        @Override
+        public CompletableFuture<EncodedAudio> getSoundAsync(ServerLevel level, UUID sound, Executor executor) {
+            return AudioManager.getSoundAsync(level.getServer(), sound, executor);
+        }
+    };
+
     private final Map<UUID, PlayerReference> players;
-    private final ExecutorService executor;
+    private final AudioLoader loader;
+    private final SoundLookup sounds;
 
     public PlayerManager() {
+        this(new AudioLoader(AudioPlayer.SERVER_CONFIG.loaderThreads.get()), AUDIO_MANAGER);
+    }
+
+    // Allows playing audio that isn't in the audio manager, like the generated audio of the load test
+    public PlayerManager(AudioLoader loader, SoundLookup sounds) {
         this.players = new ConcurrentHashMap<>();
-        this.executor = Executors.newSingleThreadExecutor(r -> {
-            Thread thread = new Thread(r, "AudioPlayerThread");
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.loader = loader;
+        this.sounds = sounds;
     }
 
     @Nullable
     public UUID playLocational(VoicechatServerApi api, ServerLevel level, Vec3 pos, UUID sound, @Nullable ServerPlayer p, float distance, @Nullable String category, int maxLengthSeconds) {
+        if (sounds.getLengthSeconds(level, sound) > maxLengthSeconds) {
+            onTooLong(sound, p);
+            return null;
+        }
+        PlaybackStartEvent startEvent = new PlaybackStartEvent();
+        startEvent.begin();
         UUID channelID = UUID.randomUUID();
         LocationalAudioChannel channel = api.createLocationalAudioChannel(channelID, api.fromServerLevel(level), api.createPosition(pos.x, pos.y, pos.z));
         if (channel == null) {
@@ -66,10 +87,15 @@ public class PlayerManager {
                     audioPlayer.stopPlaying();
                 }
             }
-        }, player, sound));
+        }, player, sound, getPlaybackType(category)));
 
-        executor.execute(() -> {
-            de.maxhenkel.voicechat.api.audiochannel.AudioPlayer audioPlayer = playChannel(api, channel, level, sound, p, maxLengthSeconds);
+        sounds.getSoundAsync(level, sound, loader.getLane(getPriority(category))).whenComplete((audio, error) -> {
+            if (error != null) {
+                onPlaybackFailed(error, p);
+                players.remove(channelID);
+                return;
+            }
+            de.maxhenkel.voicechat.api.audiochannel.AudioPlayer audioPlayer = playChannel(channel, level, pos, distance, sound, audio, p, maxLengthSeconds);
             if (audioPlayer == null) {
                 players.remove(channelID);
                 return;
@@ -77,6 +103,7 @@ public class PlayerManager {
             audioPlayer.setOnStopped(() -> {
                 players.remove(channelID);
             });
+            onStarted(startEvent, sound, category, getPlaybackType(category));
             synchronized (stopped) {
                 if (!stopped.get()) {
                     player.set(audioPlayer);
@@ -90,6 +117,12 @@ public class PlayerManager {
 
     @Nullable
     public UUID playStatic(VoicechatServerApi api, ServerLevel level, Vec3 pos, UUID sound, @Nullable ServerPlayer p, float distance, @Nullable String category, int maxLengthSeconds) {
+        if (sounds.getLengthSeconds(level, sound) > maxLengthSeconds) {
+            onTooLong(sound, p);
+            return null;
+        }
+        PlaybackStartEvent startEvent = new PlaybackStartEvent();
+        startEvent.begin();
         UUID channelID = UUID.randomUUID();
 
         api.getPlayersInRange(api.fromServerLevel(level), api.createPosition(pos.x, pos.y, pos.z), distance + 1F, serverPlayer -> {
@@ -102,8 +135,6 @@ public class PlayerManager {
             player.displayClientMessage(Component.literal("You need to enable voice chat to hear custom audio"), true);
         });
 
-        StaticAudioPlayer staticAudioPlayer = StaticAudioPlayer.create(api, level, sound, p, maxLengthSeconds, category, pos, channelID, distance);
-
         AtomicBoolean stopped = new AtomicBoolean();
         AtomicReference<de.maxhenkel.voicechat.api.audiochannel.AudioPlayer> player = new AtomicReference<>();
 
@@ -115,9 +146,19 @@ public class PlayerManager {
                     audioPlayer.stopPlaying();
                 }
             }
-        }, player));
+        }, player, sound, PlaybackType.ANNOUNCER));
 
-        executor.execute(() -> {
+        sounds.getSoundAsync(level, sound, loader.getLane(getPriority(category))).whenComplete((audio, error) -> {
+            if (error != null) {
+                onPlaybackFailed(error, p);
+                players.remove(channelID);
+                return;
+            }
+            if (stopped.get()) {
+                players.remove(channelID);
+                return;
+            }
+            StaticAudioPlayer staticAudioPlayer = StaticAudioPlayer.create(api, level, sound, audio, p, maxLengthSeconds, category, pos, distance);
             if (staticAudioPlayer == null) {
                 players.remove(channelID);
                 return;
@@ -125,6 +166,7 @@ public class PlayerManager {
             staticAudioPlayer.setOnStopped(() -> {
                 players.remove(channelID);
             });
+            onStarted(startEvent, sound, category, PlaybackType.ANNOUNCER);
             synchronized (stopped) {
                 if (!stopped.get()) {
                     player.set(staticAudioPlayer);
@@ -138,31 +180,68 @@ public class PlayerManager {
 
 
     @Nullable
-    private de.maxhenkel.voicechat.api.audiochannel.AudioPlayer playChannel(VoicechatServerApi api, AudioChannel channel, ServerLevel level, UUID sound, ServerPlayer p, int maxLengthSeconds) {
+    private de.maxhenkel.voicechat.api.audiochannel.AudioPlayer playChannel(LocationalAudioChannel channel, ServerLevel level, Vec3 pos, float distance, UUID sound, EncodedAudio audio, ServerPlayer p, int maxLengthSeconds) {
         try {
-            short[] audio = AudioManager.getSound(level.getServer(), sound);
-
-            if (AudioManager.getLengthSeconds(audio) > maxLengthSeconds) {
-                if (p != null) {
-                    p.displayClientMessage(Component.literal("Audio is too long to play").withStyle(ChatFormatting.DARK_RED), true);
-                } else {
-                    AudioPlayer.LOGGER.error("Audio {} was too long to play", sound);
-                }
+            if (audio.getLengthSeconds() > maxLengthSeconds) {
+                onTooLong(sound, p);
                 return null;
             }
 
-            de.maxhenkel.voicechat.api.audiochannel.AudioPlayer player = api.createAudioPlayer(channel, api.createEncoder(), audio);
+            LocationalAudioPlayer player = new LocationalAudioPlayer(audio, channel, level, pos, distance);
+            player.setMaxLengthSeconds(maxLengthSeconds);
             player.startPlaying();
             return player;
         } catch (Exception e) {
-            AudioPlayer.LOGGER.error("Failed to play audio", e);
-            if (p != null) {
-                p.displayClientMessage(Component.literal("Failed to play audio: %s".formatted(e.getMessage())).withStyle(ChatFormatting.DARK_RED), true);
-            }
+            onPlaybackFailed(e, p);
             return null;
         }
     }
 
+    private static void onStarted(PlaybackStartEvent event, UUID sound, @Nullable String category, PlaybackType type) {
+        if (event.shouldCommit()) {
+            event.sound = sound.toString();
+            event.category = category;
+            event.type = type.name();
+            event.commit();
+        }
+    }
+
+    static void onTooLong(UUID sound, @Nullable ServerPlayer p) {
+        if (p != null) {
+            p.displayClientMessage(Component.literal("Audio is too long to play").withStyle(ChatFormatting.DARK_RED), true);
+        } else {
+            AudioPlayer.LOGGER.error("Audio {} was too long to play", sound);
+        }
+    }
+
+    private static void onPlaybackFailed(Throwable e, @Nullable ServerPlayer p) {
+        AudioPlayer.LOGGER.error("Failed to play audio", e);
+        if (p != null) {
+            p.displayClientMessage(Component.literal("Failed to play audio: %s".formatted(e.getMessage())).withStyle(ChatFormatting.DARK_RED), true);
+        }
+    }
+
+    private static AudioLoader.Priority getPriority(@Nullable String category) {
+        if (Plugin.GOAT_HORN_CATEGORY.equals(category)) {
+            return AudioLoader.Priority.INTERACTIVE;
+        }
+        return AudioLoader.Priority.MUSIC;
+    }
+
+    private static PlaybackType getPlaybackType(@Nullable String category) {
+        if (Plugin.MUSIC_DISC_CATEGORY.equals(category)) {
+            return PlaybackType.MUSIC_DISC;
+        }
+        if (Plugin.GOAT_HORN_CATEGORY.equals(category)) {
+            return PlaybackType.GOAT_HORN;
+        }
+        return PlaybackType.OTHER;
+    }
+
+    public AudioLoader getLoader() {
+        return loader;
+    }
+
     public void stop(UUID channelID) {
         PlayerReference player = players.get(channelID);
         if (player != null) {
@@ -183,6 +262,16 @@ public class PlayerManager {
         return p.isPlaying();
     }
 
+    public int getActivePlayers(PlaybackType type) {
+        int count = 0;
+        for (PlayerReference player : players.values()) {
+            if (player.type == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private static PlayerManager instance;
 
     public static PlayerManager instance() {
@@ -192,12 +281,24 @@ public class PlayerManager {
         return instance;
     }
 
+    public interface SoundLookup {
+        // Returns -1 if the length is not known before loading the audio
+        float getLengthSeconds(ServerLevel level, UUID sound);
+
+        CompletableFuture<EncodedAudio> getSoundAsync(ServerLevel level, UUID sound, Executor executor);
+    }
+
     private interface Stoppable {
         void stop();
     }
 
     private record PlayerReference(Stoppable onStop,
-                                   AtomicReference<de.maxhenkel.voicechat.api.audiochannel.AudioPlayer> player, UUID sound) {
+                                   AtomicReference<de.maxhenkel.voicechat.api.audiochannel.AudioPlayer> player, UUID sound,
+                                   PlaybackType type) {
+    }
+
+    public enum PlaybackType {
+        MUSIC_DISC, GOAT_HORN, ANNOUNCER, OTHER
     }
 
     @Nullable
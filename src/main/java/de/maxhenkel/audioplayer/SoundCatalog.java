@@ -0,0 +1,281 @@
+package de.maxhenkel.audioplayer;
+
+import com.google.gson.*;
+import de.maxhenkel.audioplayer.storage.AudioStore;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SoundCatalog {
+
+    public static final String CATALOG_FILE = "catalog.json";
+    private static final long SAVE_DELAY_SECONDS = 5L;
+    private static final long MISSING_EXPIRY_NS = 30_000_000_000L;
+
+    private final MinecraftServer server;
+    private final Path file;
+    private final Map<UUID, Entry> entries;
+    // IDs that were looked up, but don't exist, so stale discs don't hit the disk on every play
+    // Expires after a while, so audio that is added to the store by other means shows up without a rescan
+    private final Map<UUID, Long> missing;
+    private final AtomicBoolean savePending;
+
+    public SoundCatalog(MinecraftServer server) {
+        this.server = server;
+        this.file = server.getWorldPath(AudioManager.AUDIO_DATA).resolve(CATALOG_FILE);
+        this.entries = new ConcurrentHashMap<>();
+        this.missing = new ConcurrentHashMap<>();
+        this.savePending = new AtomicBoolean();
+    }
+
+    public MinecraftServer getServer() {
+        return server;
+    }
+
+    public void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file)) {
+            JsonElement json = JsonParser.parseReader(reader);
+            if (!(json instanceof JsonObject object)) {
+                throw new IOException("Invalid catalog");
+            }
+            for (Map.Entry<String, JsonElement> e : object.entrySet()) {
+                if (!(e.getValue() instanceof JsonObject entry)) {
+                    continue;
+                }
+                entries.put(UUID.fromString(e.getKey()), Entry.fromJson(entry));
+            }
+        } catch (Exception e) {
+            AudioPlayer.LOGGER.warn("Failed to load audio catalog, rebuilding it", e);
+            entries.clear();
+        }
+    }
+
+    // Adds audio files that were added without an upload or before the catalog existed
+    public void scan() {
+        missing.clear();
+        Set<UUID> ids = new HashSet<>();
+        try {
+            AudioManager.getStore(server).forEach((key, extension) -> {
+                if (!extension.equals(AudioManager.ALIAS_EXTENSION) && !extension.equals(AudioConverter.AudioType.MP3.getExtension()) && !extension.equals(AudioConverter.AudioType.WAV.getExtension())) {
+                    return;
+                }
+                try {
+                    ids.add(UUID.fromString(key));
+                } catch (IllegalArgumentException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            AudioPlayer.LOGGER.warn("Failed to scan audio files", e);
+        }
+        int added = 0;
+        for (UUID id : ids) {
+            if (entries.containsKey(id)) {
+                continue;
+            }
+            Entry entry = index(id);
+            if (entry != null) {
+                entries.put(id, entry);
+                added++;
+            }
+        }
+        if (added > 0) {
+            AudioPlayer.LOGGER.info("Added {} audio files to the catalog", added);
+            scheduleSave();
+        }
+    }
+
+    // Only returns entries that are already in the catalog, so it never blocks on disk access
+    @Nullable
+    public Entry getCached(UUID id) {
+        return entries.get(id);
+    }
+
+    @Nullable
+    public Entry get(UUID id) {
+        Entry entry = entries.get(id);
+        if (entry != null || isMissing(id)) {
+            return entry;
+        }
+        entry = index(id);
+        if (entry != null) {
+            entries.put(id, entry);
+            scheduleSave();
+        } else {
+            missing.put(id, System.nanoTime() + MISSING_EXPIRY_NS);
+        }
+        return entry;
+    }
+
+    public CompletableFuture<Entry> getAsync(UUID id, Executor executor) {
+        Entry entry = entries.get(id);
+        if (entry != null || isMissing(id)) {
+            return CompletableFuture.completedFuture(entry);
+        }
+        return CompletableFuture.supplyAsync(() -> get(id), executor);
+    }
+
+    public void put(UUID id, Entry entry) {
+        entries.put(id, entry);
+        missing.remove(id);
+        scheduleSave();
+    }
+
+    private boolean isMissing(UUID id) {
+        Long expiry = missing.get(id);
+        if (expiry == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiry >= 0L) {
+            missing.remove(id, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Nullable
+    private Entry index(UUID id) {
+        AudioStore store = AudioManager.getStore(server);
+        String key = id.toString();
+        try {
+            if (store.exists(key, AudioManager.ALIAS_EXTENSION)) {
+                String hash;
+                try (InputStream inputStream = store.open(key, AudioManager.ALIAS_EXTENSION)) {
+                    hash = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).trim();
+                }
+                if (!AudioManager.isContentHash(hash)) {
+                    throw new IOException("Invalid audio reference %s".formatted(id));
+                }
+                return index(store, hash, hash, store.lastModified(key, AudioManager.ALIAS_EXTENSION));
+            }
+            return index(store, key, null, -1L);
+        } catch (IOException e) {
+            AudioPlayer.LOGGER.warn("Failed to index audio {}", id, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Entry index(AudioStore store, String key, @Nullable String hash, long uploadTime) throws IOException {
+        for (AudioConverter.AudioType type : AudioConverter.AudioType.values()) {
+            if (!store.exists(key, type.getExtension())) {
+                continue;
+            }
+            long samples;
+            boolean estimated;
+            if (store.exists(key, AudioManager.PCM_EXTENSION)) {
+                samples = store.size(key, AudioManager.PCM_EXTENSION) / 2L;
+                estimated = false;
+            } else {
+                // File headers only give an estimate, which is replaced with the real length once the audio is decoded
+                Path path = store.getPath(key, type.getExtension());
+                samples = path == null ? -1L : AudioConverter.getExpectedSampleCount(path);
+                estimated = samples >= 0L;
+            }
+            return new Entry(type.getExtension(), store.size(key, type.getExtension()), samples, estimated, hash, uploadTime < 0L ? store.lastModified(key, type.getExtension()) : uploadTime);
+        }
+        return null;
+    }
+
+    // Writes all changes made within a few seconds at once instead of rewriting the catalog for every change
+    private void scheduleSave() {
+        if (!savePending.compareAndSet(false, true)) {
+            return;
+        }
+        AudioPlayer.SCHEDULED_EXECUTOR.schedule(this::flush, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void flush() {
+        if (savePending.compareAndSet(true, false)) {
+            save();
+        }
+    }
+
+    private synchronized void save() {
+        JsonObject object = new JsonObject();
+        for (Map.Entry<UUID, Entry> e : entries.entrySet()) {
+            object.add(e.getKey().toString(), e.getValue().toJson());
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(tempFile)) {
+                new Gson().toJson(object, writer);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            AudioPlayer.LOGGER.warn("Failed to save audio catalog", e);
+        }
+    }
+
+    public record Entry(String format, long size, long durationSamples, boolean estimated, @Nullable String hash, long uploadTime) {
+
+        public String getContentKey(UUID id) {
+            return hash != null ? hash : id.toString();
+        }
+
+        public Entry withDurationSamples(long durationSamples) {
+            return new Entry(format, size, durationSamples, false, hash, uploadTime);
+        }
+
+        // Returns -1 if the duration is unknown
+        public float getLengthSeconds() {
+            if (durationSamples < 0L) {
+                return -1F;
+            }
+            return (float) durationSamples / AudioConverter.FORMAT.getSampleRate();
+        }
+
+        private JsonObject toJson() {
+            JsonObject object = new JsonObject();
+            object.addProperty("format", format);
+            object.addProperty("size", size);
+            object.addProperty("duration_samples", durationSamples);
+            if (estimated) {
+                object.addProperty("duration_estimated", true);
+            }
+            if (hash != null) {
+                object.addProperty("hash", hash);
+            }
+            object.addProperty("upload_time", uploadTime);
+            return object;
+        }
+
+        private static Entry fromJson(JsonObject object) {
+            JsonElement hash = object.get("hash");
+            JsonElement estimated = object.get("duration_estimated");
+            return new Entry(
+                    object.get("format").getAsString(),
+                    object.get("size").getAsLong(),
+                    object.get("duration_samples").getAsLong(),
+                    estimated != null && estimated.getAsBoolean(),
+                    hash == null ? null : hash.getAsString(),
+                    object.get("upload_time").getAsLong()
+            );
+        }
+    }
+
+}
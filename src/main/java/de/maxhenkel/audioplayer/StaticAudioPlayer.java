@@ -1,10 +1,7 @@
 package de.maxhenkel.audioplayer;
 
-import de.maxhenkel.voicechat.api.Player;
-import de.maxhenkel.voicechat.api.VoicechatConnection;
 import de.maxhenkel.voicechat.api.VoicechatServerApi;
 import de.maxhenkel.voicechat.api.audiochannel.StaticAudioChannel;
-import de.maxhenkel.voicechat.api.opus.OpusEncoder;
 import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
@@ -12,63 +9,49 @@ import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.phys.Vec3;
 
 import javax.annotation.Nullable;
-import java.util.Arrays;
-import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Supplier;
+import java.util.*;
+import java.util.function.Predicate;
 
 // TODO Move this to the voice chat API
-public class StaticAudioPlayer implements de.maxhenkel.voicechat.api.audiochannel.AudioPlayer, Runnable {
+public class StaticAudioPlayer extends PacketAudioPlayer {
+
+    private static final int LISTENER_UPDATE_INTERVAL = 5;
 
-    private final Thread playbackThread;
-    private final AudioSupplier audio;
     private final VoicechatServerApi api;
     private final String category;
     private final Vec3 pos;
     private final ServerLevel level;
     private final float distance;
-    private final OpusEncoder encoder;
-
-    private static final long FRAME_SIZE_NS = 20_000_000;
-    public static final int SAMPLE_RATE = 48000;
-    public static final int FRAME_SIZE = (SAMPLE_RATE / 1000) * 20;
 
-    private final ConcurrentHashMap<UUID, StaticAudioChannel> audioChannels;
-    private boolean started;
-    @Nullable
-    private Runnable onStopped;
+    // Kept as a list as well, so sending doesn't need to allocate iterators
+    private final Map<UUID, ListenerChannel> channelsByListener;
+    private final List<ListenerChannel> audioChannels;
+    private final Predicate<ListenerIndex.Listener> listenerVisitor;
+    private int frameCounter;
+    private int updateCounter;
 
-    public StaticAudioPlayer(short[] audio, VoicechatServerApi api, String category, Vec3 pos, UUID playerID, ServerLevel level, float distance) {
-        this.playbackThread = new Thread(this);
-        this.audio = new AudioSupplier(audio);
+    public StaticAudioPlayer(EncodedAudio audio, VoicechatServerApi api, String category, Vec3 pos, ServerLevel level, float distance) {
+        super(audio);
         this.api = api;
         this.category = category;
         this.pos = pos;
-        this.audioChannels = new ConcurrentHashMap<>();
-        this.encoder = api.createEncoder();
-        this.playbackThread.setDaemon(true);
-        this.playbackThread.setName("StaticAudioPlayer-%s".formatted(playerID));
+        this.channelsByListener = new HashMap<>();
+        this.audioChannels = new ArrayList<>();
+        this.listenerVisitor = this::onListenerInRange;
         this.level = level;
         this.distance = distance;
     }
 
-    public static StaticAudioPlayer create(VoicechatServerApi api, ServerLevel level, UUID sound, ServerPlayer p, int maxLengthSeconds, String category, Vec3 pos, UUID playerID, float distance) {
+    @Nullable
+    public static StaticAudioPlayer create(VoicechatServerApi api, ServerLevel level, UUID sound, EncodedAudio audio, @Nullable ServerPlayer p, int maxLengthSeconds, String category, Vec3 pos, float distance) {
         try {
-            short[] audio = AudioManager.getSound(level.getServer(), sound);
-
-            if (AudioManager.getLengthSeconds(audio) > maxLengthSeconds) {
-                if (p != null) {
-                    p.displayClientMessage(Component.literal("Audio is too long to play").withStyle(ChatFormatting.DARK_RED), true);
-                } else {
-                    AudioPlayer.LOGGER.error("Audio {} was too long to play", sound);
-                }
+            if (audio.getLengthSeconds() > maxLengthSeconds) {
+                PlayerManager.onTooLong(sound, p);
                 return null;
             }
 
-            StaticAudioPlayer instance = new StaticAudioPlayer(audio, api, category, pos, playerID, level, distance);
+            StaticAudioPlayer instance = new StaticAudioPlayer(audio, api, category, pos, level, distance);
+            instance.setMaxLengthSeconds(maxLengthSeconds);
             instance.startPlaying();
             return instance;
         } catch (Exception e) {
@@ -80,133 +63,76 @@ public class StaticAudioPlayer implements de.maxhenkel.voicechat.api.audiochanne
         }
     }
 
-    @Override
-    public void startPlaying() {
-        if (started) {
-            return;
-        }
-        this.playbackThread.start();
-        started = true;
-    }
+    private void updateListeners() {
+        updateCounter++;
+        ListenerIndex.instance().forEachListener(level, pos, distance, listenerVisitor);
 
-    @Override
-    public void stopPlaying() {
-        this.playbackThread.interrupt();
+        for (int i = audioChannels.size() - 1; i >= 0; i--) {
+            ListenerChannel channel = audioChannels.get(i);
+            if (channel.lastSeen == updateCounter) {
+                continue;
+            }
+            channel.audioChannel.flush();
+            channelsByListener.remove(channel.listener);
+            int last = audioChannels.size() - 1;
+            audioChannels.set(i, audioChannels.get(last));
+            audioChannels.remove(last);
+        }
     }
 
-    @Override
-    public boolean isStarted() {
-        return started;
+    private boolean onListenerInRange(ListenerIndex.Listener listener) {
+        ListenerChannel channel = channelsByListener.get(listener.uuid());
+        if (channel == null) {
+            StaticAudioChannel audioChannel = api.createStaticAudioChannel(UUID.randomUUID(), api.fromServerLevel(level), listener.connection());
+            if (audioChannel == null) {
+                return true;
+            }
+            audioChannel.setCategory(category);
+            channel = new ListenerChannel(listener.uuid(), audioChannel);
+            channelsByListener.put(listener.uuid(), channel);
+            audioChannels.add(channel);
+        }
+        channel.lastSeen = updateCounter;
+        return true;
     }
 
     @Override
-    public boolean isPlaying() {
-        return playbackThread.isAlive();
+    protected boolean hasListeners() {
+        if (frameCounter++ % LISTENER_UPDATE_INTERVAL == 0) {
+            updateListeners();
+        }
+        return !audioChannels.isEmpty();
     }
 
     @Override
-    public boolean isStopped() {
-        return started && !playbackThread.isAlive();
+    protected void sendFrame(byte[] frame) {
+        for (int i = 0; i < audioChannels.size(); i++) {
+            audioChannels.get(i).audioChannel.send(frame);
+        }
     }
 
     @Override
-    public void setOnStopped(Runnable onStopped) {
-        this.onStopped = onStopped;
+    protected void flush() {
+        for (int i = 0; i < audioChannels.size(); i++) {
+            audioChannels.get(i).audioChannel.flush();
+        }
     }
 
     @Override
-    public void run() {
-        int framePosition = 0;
-
-        ScheduledFuture<?> nearbyPlayersTask = AudioPlayer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(() -> {
-            List<ServerPlayer> players = api.getPlayersInRange(api.fromServerLevel(this.level), api.createPosition(pos.x, pos.y, pos.z), distance + 1F, serverPlayer -> {
-                VoicechatConnection connection = api.getConnectionOf(serverPlayer);
-                if (connection != null) {
-                    // TODO Either document in the api that this helper is square distance, or provide a spherical version (or both?)
-                    Vec3 playerPos = ((ServerPlayer) serverPlayer.getPlayer()).getPosition(0.0F);
-                    return !connection.isDisabled() && pos.distanceTo(playerPos) <= distance;
-                }
-                return false;
-            }).stream().map(Player::getPlayer).map(ServerPlayer.class::cast).toList();
-
-            for (ServerPlayer player : players) {
-                this.audioChannels.computeIfAbsent(player.getUUID(), uuid -> {
-                    StaticAudioChannel audioChannel = api.createStaticAudioChannel(UUID.randomUUID(), api.fromServerLevel(this.level), api.getConnectionOf(api.fromServerPlayer(player)));
-                    audioChannel.setCategory(this.category);
-                    return audioChannel;
-                });
-            }
-
-            List<UUID> uuids = players.stream().map(ServerPlayer::getUUID).toList();
-
-            for (UUID uuid : this.audioChannels.keySet()) {
-                if (!uuids.contains(uuid)) {
-                    StaticAudioChannel toRemove = this.audioChannels.remove(uuid);
-                    toRemove.flush();
-                }
-            }
-        }, 0L, 100L, TimeUnit.MILLISECONDS);
-
-        long startTime = System.nanoTime();
-
-        short[] frame;
-
-        while ((frame = this.audio.get()) != null) {
-            if (frame.length != FRAME_SIZE) {
-                AudioPlayer.LOGGER.error("Got invalid audio frame size {}!={}", frame.length, FRAME_SIZE);
-                break;
-            }
-            byte[] encoded = encoder.encode(frame);
-            for (StaticAudioChannel audioChannel : this.audioChannels.values()) {
-                audioChannel.send(encoded);
-            }
-            framePosition++;
-            long waitTimestamp = startTime + framePosition * FRAME_SIZE_NS;
-
-            long waitNanos = waitTimestamp - System.nanoTime();
-
-            try {
-                if (waitNanos > 0L) {
-                    Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000));
-                }
-            } catch (InterruptedException e) {
-                break;
-            }
-        }
-
-        encoder.close();
-        nearbyPlayersTask.cancel(true);
-
-        for (StaticAudioChannel audioChannel : this.audioChannels.values()) {
-            audioChannel.flush();
-        }
-
-        if (onStopped != null) {
-            onStopped.run();
-        }
+    protected void onStop() {
+        flush();
+        audioChannels.clear();
+        channelsByListener.clear();
     }
 
-    public class AudioSupplier implements Supplier<short[]> {
-
-        private final short[] audioData;
-        private final short[] frame;
-        private int framePosition;
-
-        public AudioSupplier(short[] audioData) {
-            this.audioData = audioData;
-            this.frame = new short[FRAME_SIZE];
-        }
-
-        @Override
-        public short[] get() {
-            if (framePosition >= audioData.length) {
-                return null;
-            }
+    private static class ListenerChannel {
+        private final UUID listener;
+        private final StaticAudioChannel audioChannel;
+        private int lastSeen;
 
-            Arrays.fill(frame, (short) 0);
-            System.arraycopy(audioData, framePosition, frame, 0, Math.min(frame.length, audioData.length - framePosition));
-            framePosition += frame.length;
-            return frame;
+        private ListenerChannel(UUID listener, StaticAudioChannel audioChannel) {
+            this.listener = listener;
+            this.audioChannel = audioChannel;
         }
     }
 }
@@ -0,0 +1,194 @@
+package de.maxhenkel.audioplayer;
+
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.Component;
+
+import javax.annotation.Nullable;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UploadManager {
+
+    private static final long PROGRESS_INTERVAL_NS = 5_000_000_000L;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Integer, Upload> uploads;
+    private final AtomicInteger idCounter;
+
+    public UploadManager(int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "AudioPlayerUpload-%s".formatted(threadIndex.incrementAndGet()));
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                AudioPlayer.LOGGER.error("Uncaught exception in thread {}", t.getName(), e);
+            });
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.uploads = new ConcurrentHashMap<>();
+        this.idCounter = new AtomicInteger();
+    }
+
+    public void submit(CommandSourceStack source, String description, UploadTask task) {
+        Upload upload;
+        int position;
+        synchronized (this) {
+            @Nullable UUID owner = source.getPlayer() == null ? null : source.getPlayer().getUUID();
+            int maxUploads = AudioPlayer.SERVER_CONFIG.maxUploadsPerPlayer.get();
+            if (owner != null && uploads.values().stream().filter(u -> owner.equals(u.owner)).count() >= maxUploads) {
+                source.sendFailure(Component.literal("You can't have more than %s uploads in progress at once".formatted(maxUploads)));
+                return;
+            }
+            upload = new Upload(idCounter.incrementAndGet(), owner, source, description);
+            position = (int) uploads.values().stream().filter(u -> !u.running).count();
+            uploads.put(upload.id, upload);
+        }
+
+        if (position > 0 || executor.getActiveCount() >= executor.getMaximumPoolSize()) {
+            source.sendSuccess(() -> Component.literal("Your upload is queued at position %s, please wait...".formatted(position + 1)), false);
+        }
+
+        try {
+            upload.future = executor.submit(() -> run(upload, task));
+        } catch (RejectedExecutionException e) {
+            uploads.remove(upload.id);
+            source.sendFailure(Component.literal("Failed to queue upload"));
+        }
+    }
+
+    private void run(Upload upload, UploadTask task) {
+        try {
+            if (upload.cancelled) {
+                return;
+            }
+            upload.running = true;
+            task.run(upload);
+        } finally {
+            uploads.remove(upload.id);
+        }
+    }
+
+    public List<Upload> getUploads() {
+        List<Upload> list = new ArrayList<>(uploads.values());
+        list.sort(Comparator.comparingInt(Upload::getId));
+        return list;
+    }
+
+    public boolean cancel(int id) {
+        Upload upload = uploads.get(id);
+        if (upload == null) {
+            return false;
+        }
+        synchronized (upload) {
+            // The sound is already in the catalog, so the upload can't be undone anymore
+            if (upload.saved) {
+                return false;
+            }
+            upload.cancelled = true;
+        }
+        Future<?> future = upload.future;
+        if (future != null) {
+            future.cancel(true);
+        }
+        if (!upload.running) {
+            uploads.remove(id);
+            upload.source.sendFailure(Component.literal("Upload was cancelled"));
+        }
+        return true;
+    }
+
+    public static class Upload implements AudioManager.DownloadListener {
+        private final int id;
+        @Nullable
+        private final UUID owner;
+        private final CommandSourceStack source;
+        private final String description;
+        private volatile boolean running;
+        private volatile boolean cancelled;
+        private boolean saved;
+        private volatile long downloadedBytes;
+        private volatile long totalBytes;
+        @Nullable
+        private volatile Future<?> future;
+        private long lastProgressReport;
+
+        private Upload(int id, @Nullable UUID owner, CommandSourceStack source, String description) {
+            this.id = id;
+            this.owner = owner;
+            this.source = source;
+            this.description = description;
+            this.totalBytes = -1L;
+            this.lastProgressReport = System.nanoTime();
+        }
+
+        @Override
+        public void onProgress(long downloadedBytes, long totalBytes) throws InterruptedIOException {
+            checkCancelled();
+            this.downloadedBytes = downloadedBytes;
+            this.totalBytes = totalBytes;
+            long time = System.nanoTime();
+            if (time - lastProgressReport < PROGRESS_INTERVAL_NS) {
+                return;
+            }
+            lastProgressReport = time;
+            source.sendSuccess(() -> Component.literal("Downloading sound... %s".formatted(getProgress())), false);
+        }
+
+        @Override
+        public void checkCancelled() throws InterruptedIOException {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Upload was cancelled");
+            }
+        }
+
+        @Override
+        public synchronized void onSave() throws InterruptedIOException {
+            checkCancelled();
+            saved = true;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public CommandSourceStack getSource() {
+            return source;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public String getProgress() {
+            if (totalBytes > 0L) {
+                return "%sMB/%sMB (%s%%)".formatted(toMegabytes(downloadedBytes), toMegabytes(totalBytes), downloadedBytes * 100L / totalBytes);
+            }
+            return "%sMB".formatted(toMegabytes(downloadedBytes));
+        }
+
+        private static String toMegabytes(long bytes) {
+            return "%.1f".formatted((double) bytes / 1_000_000D);
+        }
+    }
+
+    public interface UploadTask {
+        void run(Upload upload);
+    }
+
+    private static UploadManager instance;
+
+    public static synchronized UploadManager instance() {
+        if (instance == null) {
+            instance = new UploadManager(AudioPlayer.SERVER_CONFIG.uploadThreads.get());
+        }
+        return instance;
+    }
+
+}
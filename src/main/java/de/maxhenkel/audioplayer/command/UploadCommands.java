@@ -7,6 +7,7 @@ import de.maxhenkel.admiral.annotations.RequiresPermission;
 import de.maxhenkel.audioplayer.AudioManager;
 import de.maxhenkel.audioplayer.AudioPlayer;
 import de.maxhenkel.audioplayer.Filebin;
+import de.maxhenkel.audioplayer.UploadManager;
 import net.minecraft.ChatFormatting;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.network.chat.*;
@@ -15,6 +16,7 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import java.net.UnknownHostException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -94,16 +96,16 @@ public class UploadCommands {
     @RequiresPermission("audioplayer.upload")
     @Command("filebin")
     public void filebinUpload(CommandContext<CommandSourceStack> context, @Name("id") UUID sound) {
-        new Thread(() -> {
+        UploadManager.instance().submit(context.getSource(), "Filebin %s".formatted(sound), upload -> {
             try {
                 context.getSource().sendSuccess(() -> Component.literal("Downloading sound, please wait..."), false);
-                Filebin.downloadSound(context.getSource().getServer(), sound);
+                Filebin.downloadSound(context.getSource().getServer(), sound, upload);
                 context.getSource().sendSuccess(() -> sendUUIDMessage(sound, Component.literal("Successfully downloaded sound.")), false);
             } catch (Exception e) {
                 AudioPlayer.LOGGER.warn("{} failed to download a sound: {}", context.getSource().getTextName(), e.getMessage());
                 context.getSource().sendFailure(Component.literal("Failed to download sound: %s".formatted(e.getMessage())));
             }
-        }).start();
+        });
     }
 
     @RequiresPermission("audioplayer.upload")
@@ -128,10 +130,10 @@ public class UploadCommands {
     @Command("url")
     public void urlUpload(CommandContext<CommandSourceStack> context, @Name("url") String url) {
         UUID sound = UUID.randomUUID();
-        new Thread(() -> {
+        UploadManager.instance().submit(context.getSource(), url, upload -> {
             try {
                 context.getSource().sendSuccess(() -> Component.literal("Downloading sound, please wait..."), false);
-                AudioManager.saveSound(context.getSource().getServer(), sound, url);
+                AudioManager.saveSound(context.getSource().getServer(), sound, url, upload);
                 context.getSource().sendSuccess(() -> sendUUIDMessage(sound, Component.literal("Successfully downloaded sound.")), false);
             } catch (UnknownHostException e) {
                 AudioPlayer.LOGGER.warn("{} failed to download a sound: {}", context.getSource().getTextName(), e.toString());
@@ -143,7 +145,7 @@ public class UploadCommands {
                 AudioPlayer.LOGGER.warn("{} failed to download a sound: {}", context.getSource().getTextName(), e.toString());
                 context.getSource().sendFailure(Component.literal("Failed to download sound: %s".formatted(e.getMessage())));
             }
-        }).start();
+        });
     }
 
     @RequiresPermission("audioplayer.upload")
@@ -188,10 +190,10 @@ public class UploadCommands {
             return;
         }
         UUID uuid = UUID.randomUUID();
-        new Thread(() -> {
+        UploadManager.instance().submit(context.getSource(), fileName, upload -> {
             Path file = AudioManager.getUploadFolder().resolve(fileName);
             try {
-                AudioManager.saveSound(context.getSource().getServer(), uuid, file);
+                AudioManager.saveSound(context.getSource().getServer(), uuid, file, upload);
                 context.getSource().sendSuccess(() -> sendUUIDMessage(uuid, Component.literal("Successfully copied sound.")), false);
                 context.getSource().sendSuccess(() -> Component.literal("Deleted temporary file ").append(Component.literal(fileName).withStyle(ChatFormatting.GRAY)).append("."), false);
             } catch (NoSuchFileException e) {
@@ -200,7 +202,44 @@ public class UploadCommands {
                 AudioPlayer.LOGGER.warn("{} failed to copy a sound: {}", context.getSource().getTextName(), e.getMessage());
                 context.getSource().sendFailure(Component.literal("Failed to copy sound: %s".formatted(e.getMessage())));
             }
-        }).start();
+        });
+    }
+
+    @RequiresPermission("audioplayer.manage_uploads")
+    @Command("uploads")
+    public void uploads(CommandContext<CommandSourceStack> context) {
+        List<UploadManager.Upload> uploads = UploadManager.instance().getUploads();
+        if (uploads.isEmpty()) {
+            context.getSource().sendSuccess(() -> Component.literal("There are no uploads in progress"), false);
+            return;
+        }
+        for (UploadManager.Upload upload : uploads) {
+            context.getSource().sendSuccess(() ->
+                            Component.literal("#%s ".formatted(upload.getId()))
+                                    .append(Component.literal(upload.getSource().getTextName()).withStyle(ChatFormatting.GRAY))
+                                    .append(" %s ".formatted(upload.getDescription()))
+                                    .append(Component.literal(upload.isRunning() ? upload.getProgress() : "queued").withStyle(ChatFormatting.GRAY))
+                                    .append(" ")
+                                    .append(ComponentUtils.wrapInSquareBrackets(Component.literal("Cancel"))
+                                            .withStyle(style -> {
+                                                return style
+                                                        .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/audioplayer uploads cancel %s".formatted(upload.getId())))
+                                                        .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Component.literal("Cancel this upload")));
+                                            })
+                                            .withStyle(ChatFormatting.RED)
+                                    )
+                    , false);
+        }
+    }
+
+    @RequiresPermission("audioplayer.manage_uploads")
+    @Command({"uploads", "cancel"})
+    public void cancelUpload(CommandContext<CommandSourceStack> context, @Name("id") int id) {
+        if (!UploadManager.instance().cancel(id)) {
+            context.getSource().sendFailure(Component.literal("Upload #%s does not exist or has already finished".formatted(id)));
+            return;
+        }
+        context.getSource().sendSuccess(() -> Component.literal("Cancelled upload #%s".formatted(id)), false);
     }
 
     public static MutableComponent sendUUIDMessage(UUID soundID, MutableComponent component) {
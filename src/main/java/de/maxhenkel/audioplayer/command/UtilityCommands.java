@@ -4,6 +4,9 @@ import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import de.maxhenkel.admiral.annotations.Command;
 import de.maxhenkel.admiral.annotations.RequiresPermission;
+import de.maxhenkel.audioplayer.*;
+import de.maxhenkel.audioplayer.storage.PackAudioStore;
+import net.minecraft.ChatFormatting;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
@@ -13,6 +16,8 @@ import net.minecraft.world.item.InstrumentItem;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.RecordItem;
 
+import java.util.List;
+
 @Command("audioplayer")
 public class UtilityCommands {
 
@@ -57,6 +62,101 @@ public class UtilityCommands {
         context.getSource().sendSuccess(() -> Component.literal("Successfully cleared item"), false);
     }
 
+    @RequiresPermission("audioplayer.manage_storage")
+    @Command("migrate_storage")
+    public void migrateStorage(CommandContext<CommandSourceStack> context) {
+        if (!(AudioManager.getStore(context.getSource().getServer()) instanceof PackAudioStore store)) {
+            context.getSource().sendFailure(Component.literal("Set the storage mode to PACK in the server config to migrate audio files into packs"));
+            return;
+        }
+        context.getSource().sendSuccess(() -> Component.literal("Moving audio files into packs, please wait..."), false);
+        AudioPlayer.SCHEDULED_EXECUTOR.execute(() -> {
+            try {
+                int migrated = store.migrate(List.of(
+                        AudioConverter.AudioType.MP3.getExtension(),
+                        AudioConverter.AudioType.WAV.getExtension(),
+                        AudioManager.PCM_EXTENSION,
+                        AudioManager.ALIAS_EXTENSION
+                ));
+                context.getSource().sendSuccess(() -> Component.literal("Successfully moved %s audio files into packs".formatted(migrated)), false);
+            } catch (Exception e) {
+                AudioPlayer.LOGGER.error("Failed to migrate audio files", e);
+                context.getSource().sendFailure(Component.literal("Failed to migrate audio files: %s".formatted(e.getMessage())));
+            }
+        });
+    }
+
+    @RequiresPermission("audioplayer.stats")
+    @Command("stats")
+    public void stats(CommandContext<CommandSourceStack> context) {
+        AudioMetrics metrics = AudioMetrics.INSTANCE;
+        LatencyHistogram decodeTime = metrics.getDecodeTime();
+        PlayerManager playerManager = PlayerManager.instance();
+        PlaybackScheduler scheduler = PlaybackScheduler.instance();
+
+        sendStat(context, "Cache", "%s / %s MB, %.1f%% hits (%s hits, %s joined loads, %s misses)".formatted(
+                toMegabytes(AudioPlayer.AUDIO_CACHE.getCachedBytes()),
+                toMegabytes(AudioPlayer.AUDIO_CACHE.getMaxBytes()),
+                metrics.getCacheHitRate() * 100F,
+                metrics.getCacheHits(),
+                metrics.getCacheJoins(),
+                metrics.getCacheMisses()
+        ));
+        sendStat(context, "Decode time", "p50 %s ms, p99 %s ms (%s decoded)".formatted(
+                toMilliseconds(decodeTime.getPercentile(50D)),
+                toMilliseconds(decodeTime.getPercentile(99D)),
+                decodeTime.getCount()
+        ));
+        sendStat(context, "Active streams", "%s music discs, %s goat horns, %s announcers, %s other".formatted(
+                playerManager.getActivePlayers(PlayerManager.PlaybackType.MUSIC_DISC),
+                playerManager.getActivePlayers(PlayerManager.PlaybackType.GOAT_HORN),
+                playerManager.getActivePlayers(PlayerManager.PlaybackType.ANNOUNCER),
+                playerManager.getActivePlayers(PlayerManager.PlaybackType.OTHER)
+        ));
+        sendStat(context, "Playback", "%s playing, %s queued, %.0f frames/s, %s late frames, %s missed deadlines".formatted(
+                scheduler.getActivePlayers(),
+                scheduler.getPendingPlayers(),
+                metrics.getFramesPerSecond(),
+                metrics.getLateFrames(),
+                metrics.getMissedDeadlines()
+        ));
+        sendStat(context, "Encode ahead", "p1 %s frames, p50 %s frames, %s underruns".formatted(
+                toFrames(metrics.getLookahead().getPercentile(1D)),
+                toFrames(metrics.getLookahead().getPercentile(50D)),
+                metrics.getUnderruns()
+        ));
+        for (AudioLoader.Priority priority : AudioLoader.Priority.values()) {
+            AudioLoader.Lane lane = playerManager.getLoader().getLane(priority);
+            sendStat(context, "Loader (%s)".formatted(lane.getName()), "%s loading, %s queued, %.1f ms average wait".formatted(
+                    lane.getActiveCount(),
+                    lane.getQueueDepth(),
+                    lane.getAverageWaitMillis()
+            ));
+        }
+    }
+
+    private static void sendStat(CommandContext<CommandSourceStack> context, String name, String value) {
+        context.getSource().sendSuccess(() -> Component.literal("%s: ".formatted(name)).append(Component.literal(value).withStyle(ChatFormatting.GRAY)), false);
+    }
+
+    private static String toMegabytes(long bytes) {
+        return "%.1f".formatted(bytes / 1024D / 1024D);
+    }
+
+    private static String toFrames(long frames) {
+        if (frames < 0L) {
+            return "-";
+        }
+        return String.valueOf(frames);
+    }
+
+    private static String toMilliseconds(long nanos) {
+        if (nanos < 0L) {
+            return "-";
+        }
+        return "%.1f".formatted(nanos / 1_000_000D);
+    }
+
     @Command("id")
     public void id(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
         ServerPlayer player = context.getSource().getPlayerOrException();
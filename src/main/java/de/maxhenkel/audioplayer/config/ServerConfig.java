@@ -16,8 +16,15 @@ public class ServerConfig {
     public final ConfigEntry<Boolean> allowMp3Upload;
     public final ConfigEntry<Integer> maxMusicDiscDuration;
     public final ConfigEntry<Integer> maxGoatHornDuration;
-    public final ConfigEntry<Integer> cacheSize;
+    public final ConfigEntry<Integer> cacheMaxMegabytes;
     public final ConfigEntry<Boolean> announcerDiscsEnabled;
+    public final ConfigEntry<Integer> loaderThreads;
+    public final ConfigEntry<Boolean> memoryMappedAudio;
+    public final ConfigEntry<Integer> uploadThreads;
+    public final ConfigEntry<Integer> maxUploadsPerPlayer;
+    public final ConfigEntry<StorageMode> storageMode;
+    public final ConfigEntry<Integer> packSegmentMegabytes;
+    public final ConfigEntry<String> sharedStoragePath;
 
     public ServerConfig(ConfigBuilder builder) {
         filebinUrl = builder.stringEntry(
@@ -95,12 +102,12 @@ public class ServerConfig {
                 Integer.MAX_VALUE,
                 "The maximum allowed duration of a custom goat horn in seconds"
         );
-        cacheSize = builder.integerEntry(
-                "cache_size",
-                16,
+        cacheMaxMegabytes = builder.integerEntry(
+                "cache_max_megabytes",
+                128,
                 0,
                 Integer.MAX_VALUE,
-                "The maximum amount of audio files that are cached in memory",
+                "The maximum amount of encoded audio that is cached in memory in megabytes",
                 "Setting this to 0 will disable the cache",
                 "A higher value will result in less disk reads, but more RAM usage"
         );
@@ -111,6 +118,64 @@ public class ServerConfig {
                 "The /audioplayer set_announcer [enabled] command can be used when this is set to true",
                 "If this is disabled announcer discs are completely disabled and will play as normal discs if used"
         );
+        loaderThreads = builder.integerEntry(
+                "loader_threads",
+                2,
+                1,
+                64,
+                "The amount of threads that load and decode music discs in parallel",
+                "Goat horns are loaded on a separate thread, so they never wait for music discs to load"
+        );
+        memoryMappedAudio = builder.booleanEntry(
+                "memory_mapped_audio",
+                true,
+                "Whether the decoded audio stored on disk should be memory mapped instead of being streamed into the heap",
+                "Uploaded audio is always stored decoded next to the original file, regardless of this option",
+                "If enabled, audio that was uploaded with older versions will also be decoded and stored once when it is played for the first time"
+        );
+        uploadThreads = builder.integerEntry(
+                "upload_threads",
+                2,
+                1,
+                16,
+                "The amount of uploads that are downloaded and converted at the same time",
+                "Additional uploads are queued until a previous upload is finished"
+        );
+        maxUploadsPerPlayer = builder.integerEntry(
+                "max_uploads_per_player",
+                1,
+                1,
+                Integer.MAX_VALUE,
+                "The maximum amount of uploads a single player can have in progress or queued at the same time"
+        );
+        storageMode = builder.enumEntry(
+                "storage_mode",
+                StorageMode.FILES,
+                "How audio files are stored in the world folder",
+                "FILES stores every audio file as a separate file",
+                "PACK stores audio in large pack files, which is faster for worlds with many thousands of audio files",
+                "SHARED stores audio in the folder set in shared_storage_path, so multiple servers can use the same audio",
+                "Existing audio files can be moved into packs with the /audioplayer migrate_storage command"
+        );
+        packSegmentMegabytes = builder.integerEntry(
+                "pack_segment_megabytes",
+                512,
+                16,
+                2047,
+                "The maximum size of a single pack file in megabytes",
+                "This only has an effect if the storage mode is set to PACK"
+        );
+        sharedStoragePath = builder.stringEntry(
+                "shared_storage_path",
+                "",
+                "The folder that audio is stored in if the storage mode is set to SHARED",
+                "This can be a folder that multiple servers on the same machine or a network drive have access to",
+                "Audio is copied to the world folder when it is played for the first time"
+        );
+    }
+
+    public enum StorageMode {
+        FILES, PACK, SHARED
     }
 
 }
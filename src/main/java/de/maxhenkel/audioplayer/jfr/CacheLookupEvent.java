@@ -0,0 +1,24 @@
+package de.maxhenkel.audioplayer.jfr;
+
+import jdk.jfr.*;
+
+@Name("audioplayer.CacheLookup")
+@Label("Audio Cache Lookup")
+@Description("Misses last until the audio is fully loaded")
+@Category("Audio Player")
+@Enabled(false)
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+
+    public static final String HIT = "hit";
+    public static final String JOINED = "joined";
+    public static final String MISS = "miss";
+
+    @Label("Key")
+    public String key;
+
+    @Label("Result")
+    @Description("Joined lookups waited for a load that was already running")
+    public String result;
+
+}
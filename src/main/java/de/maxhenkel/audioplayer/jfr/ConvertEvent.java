@@ -0,0 +1,63 @@
+package de.maxhenkel.audioplayer.jfr;
+
+import de.maxhenkel.audioplayer.AudioConverter;
+import jdk.jfr.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+@Name("audioplayer.Convert")
+@Label("Audio Conversion")
+@Category("Audio Player")
+@Enabled(false)
+@StackTrace(false)
+public class ConvertEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Format")
+    public String format;
+
+    @Label("File Size")
+    @DataAmount
+    public long fileSize;
+
+    @Label("PCM Size")
+    @DataAmount
+    public long pcmSize;
+
+    @Label("Audio Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    public long audioDuration;
+
+    public void commit(Path path, long pcmSize) {
+        if (!shouldCommit()) {
+            return;
+        }
+        this.file = path.getFileName().toString();
+        this.format = getFormat(file);
+        try {
+            this.fileSize = Files.size(path);
+        } catch (IOException e) {
+            this.fileSize = -1L;
+        }
+        this.pcmSize = pcmSize;
+        this.audioDuration = (long) (pcmSize / AudioConverter.FORMAT.getFrameSize() / (AudioConverter.FORMAT.getSampleRate() / 1000F));
+        commit();
+    }
+
+    private static String getFormat(String fileName) {
+        if (fileName.endsWith(".tmp")) {
+            fileName = fileName.substring(0, fileName.length() - ".tmp".length());
+        }
+        int index = fileName.lastIndexOf('.');
+        if (index < 0) {
+            return "unknown";
+        }
+        return fileName.substring(index + 1).toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,12 @@
+package de.maxhenkel.audioplayer.jfr;
+
+import jdk.jfr.*;
+
+@Name("audioplayer.FrameEncode")
+@Label("Audio Frame Encode")
+@Category("Audio Player")
+@Enabled(false)
+@StackTrace(false)
+public class FrameEncodeEvent extends Event {
+
+}
@@ -0,0 +1,15 @@
+package de.maxhenkel.audioplayer.jfr;
+
+import jdk.jfr.*;
+
+@Name("audioplayer.LoaderQueue")
+@Label("Audio Loader Queue Wait")
+@Category("Audio Player")
+@Enabled(false)
+@StackTrace(false)
+public class LoaderQueueEvent extends Event {
+
+    @Label("Lane")
+    public String lane;
+
+}
@@ -0,0 +1,22 @@
+package de.maxhenkel.audioplayer.jfr;
+
+import jdk.jfr.*;
+
+@Name("audioplayer.PlaybackStart")
+@Label("Audio Playback Start")
+@Description("From the play request until the audio starts playing")
+@Category("Audio Player")
+@Enabled(false)
+@StackTrace(false)
+public class PlaybackStartEvent extends Event {
+
+    @Label("Sound")
+    public String sound;
+
+    @Label("Category")
+    public String category;
+
+    @Label("Type")
+    public String type;
+
+}
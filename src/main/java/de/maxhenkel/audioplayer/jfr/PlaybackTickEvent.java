@@ -0,0 +1,21 @@
+package de.maxhenkel.audioplayer.jfr;
+
+import jdk.jfr.*;
+
+@Name("audioplayer.PlaybackTick")
+@Label("Audio Playback Tick")
+@Description("Sends one frame to every playing audio player")
+@Category("Audio Player")
+@Enabled(false)
+@StackTrace(false)
+public class PlaybackTickEvent extends Event {
+
+    @Label("Players")
+    public int players;
+
+    @Label("Lateness")
+    @Description("How long after its deadline the tick started")
+    @Timespan
+    public long lateness;
+
+}
@@ -0,0 +1,35 @@
+package de.maxhenkel.audioplayer.storage;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+public interface AudioStore {
+
+    boolean exists(String key, String extension);
+
+    long size(String key, String extension) throws IOException;
+
+    long lastModified(String key, String extension) throws IOException;
+
+    InputStream open(String key, String extension) throws IOException;
+
+    ByteBuffer map(String key, String extension) throws IOException;
+
+    // Returns null if the data is not stored as a separate file
+    @Nullable
+    Path getPath(String key, String extension);
+
+    // Moves the file into the store and replaces existing data with the same key and extension
+    void store(String key, String extension, Path file) throws IOException;
+
+    void delete(String key, String extension) throws IOException;
+
+    void forEach(BiConsumer<String, String> consumer) throws IOException;
+
+    void close();
+
+}
@@ -0,0 +1,123 @@
+package de.maxhenkel.audioplayer.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+// Reads through a local copy of the data, which is safe because stored audio never changes once it is published
+public class CachingAudioStore implements AudioStore {
+
+    private final AudioStore remote;
+    private final FileAudioStore local;
+    private final Path tempFolder;
+
+    public CachingAudioStore(AudioStore remote, FileAudioStore local, Path tempFolder) {
+        this.remote = remote;
+        this.local = local;
+        this.tempFolder = tempFolder;
+    }
+
+    @Override
+    public boolean exists(String key, String extension) {
+        return local.exists(key, extension) || remote.exists(key, extension);
+    }
+
+    @Override
+    public long size(String key, String extension) throws IOException {
+        if (local.exists(key, extension)) {
+            return local.size(key, extension);
+        }
+        return remote.size(key, extension);
+    }
+
+    @Override
+    public long lastModified(String key, String extension) throws IOException {
+        if (local.exists(key, extension)) {
+            return local.lastModified(key, extension);
+        }
+        return remote.lastModified(key, extension);
+    }
+
+    @Override
+    public InputStream open(String key, String extension) throws IOException {
+        fetch(key, extension);
+        return local.open(key, extension);
+    }
+
+    @Override
+    public ByteBuffer map(String key, String extension) throws IOException {
+        fetch(key, extension);
+        return local.map(key, extension);
+    }
+
+    // Doesn't fetch the data, since indexing reads the headers of every file in the store
+    @Override
+    public Path getPath(String key, String extension) {
+        if (local.exists(key, extension)) {
+            return local.getPath(key, extension);
+        }
+        return remote.getPath(key, extension);
+    }
+
+    private void fetch(String key, String extension) throws IOException {
+        if (local.exists(key, extension)) {
+            return;
+        }
+        Files.createDirectories(tempFolder);
+        Path tempFile = Files.createTempFile(tempFolder, "fetch", ".tmp");
+        try {
+            try (InputStream inputStream = remote.open(key, extension)) {
+                Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            local.store(key, extension, tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public void store(String key, String extension, Path file) throws IOException {
+        Files.createDirectories(tempFolder);
+        Path localCopy = Files.createTempFile(tempFolder, "store", ".tmp");
+        try {
+            Files.copy(file, localCopy, StandardCopyOption.REPLACE_EXISTING);
+            remote.store(key, extension, file);
+            local.store(key, extension, localCopy);
+        } finally {
+            Files.deleteIfExists(localCopy);
+        }
+    }
+
+    @Override
+    public void delete(String key, String extension) throws IOException {
+        remote.delete(key, extension);
+        local.delete(key, extension);
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, String> consumer) throws IOException {
+        Set<String> names = new HashSet<>();
+        remote.forEach((key, extension) -> {
+            names.add(key + "." + extension);
+            consumer.accept(key, extension);
+        });
+        local.forEach((key, extension) -> {
+            if (!names.contains(key + "." + extension)) {
+                consumer.accept(key, extension);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        remote.close();
+        local.close();
+    }
+
+}
@@ -0,0 +1,120 @@
+package de.maxhenkel.audioplayer.storage;
+
+import de.maxhenkel.audioplayer.AudioManager;
+
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+public class FileAudioStore implements AudioStore {
+
+    private final Path folder;
+
+    public FileAudioStore(Path folder) {
+        this.folder = folder;
+    }
+
+    @Override
+    public boolean exists(String key, String extension) {
+        return Files.exists(getPath(key, extension));
+    }
+
+    @Override
+    public long size(String key, String extension) throws IOException {
+        return Files.size(getExistingPath(key, extension));
+    }
+
+    @Override
+    public long lastModified(String key, String extension) throws IOException {
+        return Files.getLastModifiedTime(getExistingPath(key, extension)).toMillis();
+    }
+
+    @Override
+    public InputStream open(String key, String extension) throws IOException {
+        return new BufferedInputStream(Files.newInputStream(getExistingPath(key, extension)));
+    }
+
+    @Override
+    public ByteBuffer map(String key, String extension) throws IOException {
+        try (FileChannel channel = FileChannel.open(getExistingPath(key, extension), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be memory mapped");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        }
+    }
+
+    @Override
+    public Path getPath(String key, String extension) {
+        if (AudioManager.isContentHash(key)) {
+            return folder.resolve(AudioManager.CONTENT_FOLDER).resolve(key + "." + extension);
+        }
+        return folder.resolve(key + "." + extension);
+    }
+
+    private Path getExistingPath(String key, String extension) throws FileNotFoundException {
+        Path path = getPath(key, extension);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("Audio does not exist");
+        }
+        return path;
+    }
+
+    @Override
+    public void store(String key, String extension, Path file) throws IOException {
+        Path path = getPath(key, extension);
+        Files.createDirectories(path.getParent());
+        try {
+            Files.move(file, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Moving between file systems can't be atomic
+            Files.move(file, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void delete(String key, String extension) throws IOException {
+        Files.deleteIfExists(getPath(key, extension));
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, String> consumer) throws IOException {
+        forEach(folder, consumer);
+        forEach(folder.resolve(AudioManager.CONTENT_FOLDER), consumer);
+    }
+
+    private static void forEach(Path folder, BiConsumer<String, String> consumer) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(path)) {
+                    continue;
+                }
+                String name = path.getFileName().toString();
+                int index = name.lastIndexOf('.');
+                if (index <= 0) {
+                    continue;
+                }
+                consumer.accept(name.substring(0, index), name.substring(index + 1));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+}
@@ -0,0 +1,445 @@
+package de.maxhenkel.audioplayer.storage;
+
+import de.maxhenkel.audioplayer.AudioPlayer;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+public class PackAudioStore implements AudioStore {
+
+    public static final String PACK_FOLDER = "packs";
+    private static final String INDEX_FILE = "index.log";
+    private static final String SEGMENT_EXTENSION = "segment";
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final long COMPACTION_INTERVAL_MINUTES = 10L;
+
+    private final Path folder;
+    private final long maxSegmentSize;
+    private final FileAudioStore fallback;
+    private final Map<String, Location> index;
+    private final Map<Integer, Segment> segments;
+    private final ReadWriteLock segmentLock;
+    @Nullable
+    private Segment activeSegment;
+    private FileChannel indexChannel;
+    private DataOutputStream indexLog;
+    @Nullable
+    private ScheduledFuture<?> compaction;
+
+    public PackAudioStore(Path folder, long maxSegmentSize, FileAudioStore fallback) throws IOException {
+        this.folder = folder;
+        this.maxSegmentSize = maxSegmentSize;
+        this.fallback = fallback;
+        this.index = new ConcurrentHashMap<>();
+        this.segments = new ConcurrentHashMap<>();
+        this.segmentLock = new ReentrantReadWriteLock();
+        Files.createDirectories(folder);
+        openSegments();
+        if (readIndex()) {
+            writeIndex();
+        } else {
+            openIndexLog();
+        }
+    }
+
+    public void scheduleCompaction(ScheduledExecutorService executor) {
+        compaction = executor.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                AudioPlayer.LOGGER.error("Failed to compact audio packs", e);
+            }
+        }, COMPACTION_INTERVAL_MINUTES, COMPACTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void openSegments() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith("." + SEGMENT_EXTENSION)) {
+                    continue;
+                }
+                int id;
+                try {
+                    id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXTENSION.length() - 1));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Segment segment = new Segment(id, path);
+                segments.put(id, segment);
+                if (activeSegment == null || id > activeSegment.id) {
+                    activeSegment = segment;
+                }
+            }
+        }
+    }
+
+    // Returns true if the index needs to be rewritten
+    private boolean readIndex() throws IOException {
+        Path indexFile = folder.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return !segments.isEmpty();
+        }
+        boolean dirty = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    String name = in.readUTF();
+                    if (type == RECORD_PUT) {
+                        Location location = new Location(in.readInt(), in.readLong(), in.readLong(), in.readLong());
+                        Segment segment = segments.get(location.segment);
+                        if (segment == null || location.offset + location.length > segment.channel.size()) {
+                            dirty = true;
+                            continue;
+                        }
+                        replace(name, location);
+                    } else if (type == RECORD_DELETE) {
+                        replace(name, null);
+                    } else {
+                        throw new IOException("Invalid index record");
+                    }
+                } catch (EOFException e) {
+                    AudioPlayer.LOGGER.warn("Audio pack index is truncated, dropping the last record");
+                    return true;
+                }
+            }
+        }
+        return dirty;
+    }
+
+    private void openIndexLog() throws IOException {
+        indexChannel = FileChannel.open(folder.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        indexLog = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(indexChannel)));
+    }
+
+    private void writeIndex() throws IOException {
+        if (indexLog != null) {
+            indexLog.close();
+        }
+        Path indexFile = folder.resolve(INDEX_FILE);
+        Path tempFile = folder.resolve(INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                writePut(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openIndexLog();
+    }
+
+    private static void writePut(DataOutputStream out, String name, Location location) throws IOException {
+        out.writeByte(RECORD_PUT);
+        out.writeUTF(name);
+        out.writeInt(location.segment);
+        out.writeLong(location.offset);
+        out.writeLong(location.length);
+        out.writeLong(location.time);
+    }
+
+    private void log(String name, @Nullable Location location) throws IOException {
+        if (location != null) {
+            writePut(indexLog, name, location);
+        } else {
+            indexLog.writeByte(RECORD_DELETE);
+            indexLog.writeUTF(name);
+        }
+        indexLog.flush();
+        indexChannel.force(false);
+    }
+
+    private void replace(String name, @Nullable Location location) {
+        Location previous = location == null ? index.remove(name) : index.put(name, location);
+        if (previous != null) {
+            Segment segment = segments.get(previous.segment);
+            if (segment != null) {
+                segment.liveBytes -= previous.length;
+            }
+        }
+        if (location != null) {
+            segments.get(location.segment).liveBytes += location.length;
+        }
+    }
+
+    private static String getName(String key, String extension) {
+        return key + "." + extension;
+    }
+
+    @Override
+    public boolean exists(String key, String extension) {
+        return index.containsKey(getName(key, extension)) || fallback.exists(key, extension);
+    }
+
+    @Override
+    public long size(String key, String extension) throws IOException {
+        Location location = index.get(getName(key, extension));
+        if (location == null) {
+            return fallback.size(key, extension);
+        }
+        return location.length;
+    }
+
+    @Override
+    public long lastModified(String key, String extension) throws IOException {
+        Location location = index.get(getName(key, extension));
+        if (location == null) {
+            return fallback.lastModified(key, extension);
+        }
+        return location.time;
+    }
+
+    @Override
+    public InputStream open(String key, String extension) throws IOException {
+        if (!index.containsKey(getName(key, extension))) {
+            return fallback.open(key, extension);
+        }
+        return new ByteBufferInputStream(map(key, extension));
+    }
+
+    @Override
+    public ByteBuffer map(String key, String extension) throws IOException {
+        segmentLock.readLock().lock();
+        try {
+            Location location = index.get(getName(key, extension));
+            if (location == null) {
+                return fallback.map(key, extension);
+            }
+            if (location.length > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be memory mapped");
+            }
+            Segment segment = segments.get(location.segment);
+            if (segment == null) {
+                throw new FileNotFoundException("Audio pack segment %s does not exist".formatted(location.segment));
+            }
+            return segment.channel.map(FileChannel.MapMode.READ_ONLY, location.offset, location.length);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Path getPath(String key, String extension) {
+        if (index.containsKey(getName(key, extension))) {
+            return null;
+        }
+        return fallback.getPath(key, extension);
+    }
+
+    @Override
+    public synchronized void store(String key, String extension, Path file) throws IOException {
+        long length = Files.size(file);
+        Segment segment = getWritableSegment(length);
+        long offset = segment.channel.size();
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            copy(source, 0L, length, segment.channel, offset);
+        }
+        String name = getName(key, extension);
+        Location location = new Location(segment.id, offset, length, System.currentTimeMillis());
+        log(name, location);
+        replace(name, location);
+        Files.delete(file);
+        fallback.delete(key, extension);
+    }
+
+    @Override
+    public synchronized void delete(String key, String extension) throws IOException {
+        String name = getName(key, extension);
+        if (index.containsKey(name)) {
+            log(name, null);
+            replace(name, null);
+        }
+        fallback.delete(key, extension);
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, String> consumer) throws IOException {
+        for (String name : index.keySet()) {
+            int i = name.lastIndexOf('.');
+            consumer.accept(name.substring(0, i), name.substring(i + 1));
+        }
+        fallback.forEach(consumer);
+    }
+
+    private Segment getWritableSegment(long length) throws IOException {
+        if (activeSegment == null || (activeSegment.channel.size() > 0L && activeSegment.channel.size() + length > maxSegmentSize)) {
+            int id = activeSegment == null ? 1 : activeSegment.id + 1;
+            activeSegment = new Segment(id, folder.resolve("%05d.%s".formatted(id, SEGMENT_EXTENSION)));
+            segments.put(id, activeSegment);
+        }
+        return activeSegment;
+    }
+
+    private static void copy(FileChannel source, long sourceOffset, long length, FileChannel target, long targetOffset) throws IOException {
+        long position = 0L;
+        while (position < length) {
+            long transferred = target.transferFrom(source.position(sourceOffset + position), targetOffset + position, length - position);
+            if (transferred <= 0L) {
+                throw new IOException("Failed to write audio pack");
+            }
+            position += transferred;
+        }
+        target.force(false);
+    }
+
+    // Moves the remaining data of segments that are mostly deleted to the end of the active segment
+    public synchronized void compact() throws IOException {
+        List<Segment> toCompact = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment == activeSegment) {
+                continue;
+            }
+            long size = segment.channel.size();
+            if (segment.liveBytes * 2L < size) {
+                toCompact.add(segment);
+            }
+        }
+        if (toCompact.isEmpty()) {
+            return;
+        }
+        long reclaimed = 0L;
+        for (Segment segment : toCompact) {
+            for (Map.Entry<String, Location> entry : new ArrayList<>(index.entrySet())) {
+                Location location = entry.getValue();
+                if (location.segment != segment.id) {
+                    continue;
+                }
+                Segment target = getWritableSegment(location.length);
+                long offset = target.channel.size();
+                copy(segment.channel, location.offset, location.length, target.channel, offset);
+                Location newLocation = new Location(target.id, offset, location.length, location.time);
+                log(entry.getKey(), newLocation);
+                replace(entry.getKey(), newLocation);
+            }
+            reclaimed += segment.channel.size();
+            segmentLock.writeLock().lock();
+            try {
+                segments.remove(segment.id);
+                segment.channel.close();
+            } finally {
+                segmentLock.writeLock().unlock();
+            }
+            Files.deleteIfExists(segment.path);
+        }
+        writeIndex();
+        AudioPlayer.LOGGER.info("Compacted {} audio pack segments ({}MB)", toCompact.size(), reclaimed / 1_000_000L);
+    }
+
+    // Moves all loose audio files into the pack
+    public int migrate(Iterable<String> extensions) throws IOException {
+        List<String[]> files = new ArrayList<>();
+        fallback.forEach((key, extension) -> {
+            for (String e : extensions) {
+                if (e.equals(extension)) {
+                    files.add(new String[]{key, extension});
+                    return;
+                }
+            }
+        });
+        int migrated = 0;
+        for (String[] file : files) {
+            Path path = fallback.getPath(file[0], file[1]);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            store(file[0], file[1], path);
+            migrated++;
+        }
+        return migrated;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (compaction != null) {
+            compaction.cancel(false);
+        }
+        try {
+            indexLog.close();
+        } catch (IOException e) {
+            AudioPlayer.LOGGER.warn("Failed to close audio pack index", e);
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                AudioPlayer.LOGGER.warn("Failed to close audio pack segment", e);
+            }
+        }
+        segments.clear();
+    }
+
+    private record Location(int segment, long offset, long length, long time) {
+    }
+
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private long liveBytes;
+
+        private Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package de.maxhenkel.audioplayer.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class SharedAudioStore extends FileAudioStore {
+
+    private static final String LOCK_FILE = "library.lock";
+    // File locks are held by the whole process, so threads of the same server need to wait for each other first
+    private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path folder;
+    private final ReentrantLock lock;
+
+    public SharedAudioStore(Path folder) throws IOException {
+        super(folder);
+        this.folder = folder;
+        Files.createDirectories(folder);
+        this.lock = LOCKS.computeIfAbsent(folder.toRealPath(), path -> new ReentrantLock());
+    }
+
+    @Override
+    public void store(String key, String extension, Path file) throws IOException {
+        Path path = getPath(key, extension);
+        Files.createDirectories(path.getParent());
+        // Copy the file next to its destination first, so other servers never see partially written files
+        Path tempFile = path.resolveSibling("%s.%s.tmp".formatted(path.getFileName(), UUID.randomUUID()));
+        try {
+            Files.copy(file, tempFile);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            lock.lock();
+            try (FileChannel lockChannel = FileChannel.open(folder.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock fileLock = lockChannel.lock()) {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        Files.delete(file);
+    }
+
+    @Override
+    public void delete(String key, String extension) throws IOException {
+        lock.lock();
+        try (FileChannel lockChannel = FileChannel.open(folder.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock fileLock = lockChannel.lock()) {
+            super.delete(key, extension);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
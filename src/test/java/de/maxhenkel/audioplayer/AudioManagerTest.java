@@ -0,0 +1,89 @@
+package de.maxhenkel.audioplayer;
+
+import de.maxhenkel.audioplayer.fixture.FixtureApi;
+import de.maxhenkel.audioplayer.fixture.FixtureAudio;
+import de.maxhenkel.audioplayer.storage.FileAudioStore;
+import de.maxhenkel.audioplayer.storage.PackAudioStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AudioManagerTest {
+
+    @TempDir
+    Path folder;
+    private PackAudioStore store;
+
+    @BeforeAll
+    public static void installApi() {
+        FixtureApi.install();
+    }
+
+    @BeforeEach
+    public void openStore() throws IOException {
+        store = new PackAudioStore(folder.resolve(PackAudioStore.PACK_FOLDER), 16L * 1024L * 1024L, new FileAudioStore(folder));
+    }
+
+    @AfterEach
+    public void closeStore() {
+        store.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void loadPackedWav(boolean memoryMapped) throws Exception {
+        EncodedAudio audio = loadPacked(FixtureAudio.createWav(folder, 2, 48000, 2), AudioConverter.AudioType.WAV, memoryMapped);
+        assertEquals(2 * 48000, audio.getSampleCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void loadPackedMp3(boolean memoryMapped) throws Exception {
+        int frames = 50;
+        EncodedAudio audio = loadPacked(FixtureAudio.createSilentMp3(folder, frames), AudioConverter.AudioType.MP3, memoryMapped);
+        // Decoders may drop the first frame
+        assertTrue(audio.getSampleCount() >= (frames - 1) * FixtureAudio.MP3_FRAME_SAMPLES, "Decoded %s samples".formatted(audio.getSampleCount()));
+    }
+
+    // Stores the file in a pack without a PCM file, like audio that was migrated into packs
+    private EncodedAudio loadPacked(Path file, AudioConverter.AudioType audioType, boolean memoryMapped) throws Exception {
+        String key = UUID.randomUUID().toString();
+        store.store(key, audioType.getExtension(), file);
+        assertNull(store.getPath(key, audioType.getExtension()));
+        assertFalse(store.exists(key, AudioManager.PCM_EXTENSION));
+
+        SoundCatalog.Entry entry = new SoundCatalog.Entry(audioType.getExtension(), store.size(key, audioType.getExtension()), -1L, false, null, System.currentTimeMillis());
+        EncodedAudio audio = new EncodedAudio();
+        AudioManager.loadSound(store, folder, key, entry, audio, memoryMapped);
+        assertTrue(audio.isComplete());
+        assertNull(audio.getError());
+        assertNoTempFiles();
+
+        if (memoryMapped) {
+            // The decoded audio was stored in the pack, so the next load doesn't need to decode it again
+            assertTrue(store.exists(key, AudioManager.PCM_EXTENSION));
+            EncodedAudio mapped = new EncodedAudio();
+            AudioManager.loadSound(store, folder, key, entry, mapped, true);
+            assertEquals(audio.getSampleCount(), mapped.getSampleCount());
+        }
+        return audio;
+    }
+
+    private void assertNoTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            assertEquals(0L, files.filter(path -> path.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package de.maxhenkel.audioplayer;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Run by the allocationTest task, since allocations are only visible without escape analysis
+@Tag("allocation")
+public class PlaybackAllocationTest {
+
+    private static final int WARMUP_TICKS = 20_000;
+    private static final int MEASURED_TICKS = 5_000;
+
+    @Test
+    public void tickDoesNotAllocate() {
+        PlaybackFixture fixture = new PlaybackFixture(100, 500);
+        // Creates the channels of all listeners in range and loads the classes used while ticking
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            fixture.tick();
+        }
+
+        long sentFrames = fixture.getSentFrames();
+        long allocated = measureAllocatedBytes(fixture::tick);
+
+        assertTrue(fixture.getSentFrames() > sentFrames, "No frames were sent");
+        assertEquals(0L, allocated, "Bytes allocated while ticking");
+    }
+
+    @Test
+    public void listenerUpdateDoesNotAllocate() {
+        PlaybackFixture fixture = new PlaybackFixture(0, 500);
+        // Fills the pools of both snapshots
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            fixture.updateListeners();
+        }
+
+        assertEquals(0L, measureAllocatedBytes(fixture::updateListeners), "Bytes allocated while updating listeners");
+    }
+
+    private static long measureAllocatedBytes(Runnable runnable) {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        threadBean.getThreadAllocatedBytes(threadId);
+
+        long allocated = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_TICKS; i++) {
+            runnable.run();
+        }
+        return threadBean.getThreadAllocatedBytes(threadId) - allocated;
+    }
+
+}
@@ -0,0 +1,95 @@
+package de.maxhenkel.audioplayer;
+
+import de.maxhenkel.audioplayer.fixture.CountingChannel;
+import de.maxhenkel.audioplayer.fixture.FixtureApi;
+import de.maxhenkel.voicechat.api.VoicechatConnection;
+import de.maxhenkel.voicechat.api.VoicechatServerApi;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.*;
+
+// Announcers and jukeboxes spread over an area with listeners, ticked without the playback thread
+// Ticks players directly, which is why it is in this package
+public class PlaybackFixture {
+
+    private static final int FRAMES = 1 << 20;
+    private static final int AREA = 512;
+    private static final float DISTANCE = 65F;
+
+    private final EncodedAudio audio;
+    private final VoicechatServerApi api;
+    private final Vec3[] positions;
+    private final PacketAudioPlayer[] players;
+    private final List<ListenerIndex.Listener> listeners;
+    private final List<CountingChannel> channels;
+
+    public PlaybackFixture(int playerCount, int listenerCount) {
+        FixtureApi.install();
+        audio = new EncodedAudio();
+        byte[] packet = new byte[FixtureApi.ENCODED_FRAME_SIZE];
+        for (int i = 0; i < FRAMES; i++) {
+            audio.addFrame(packet);
+        }
+        audio.finish(FRAMES * PacketAudioPlayer.FRAME_SIZE);
+
+        Random random = new Random(0L);
+        VoicechatConnection connection = FixtureApi.proxy(VoicechatConnection.class, (proxy, method, args) -> null);
+        listeners = new ArrayList<>();
+        for (int i = 0; i < listenerCount; i++) {
+            listeners.add(new ListenerIndex.Listener(UUID.randomUUID(), connection, random.nextDouble() * AREA, 64D, random.nextDouble() * AREA));
+        }
+        updateListeners();
+
+        channels = new ArrayList<>();
+        // The API is only used when a listener comes into range, so it can stay a proxy
+        api = FixtureApi.proxy(VoicechatServerApi.class, (proxy, method, args) -> {
+            return switch (method.getName()) {
+                case "createStaticAudioChannel" -> createChannel(new CountingChannel.Static());
+                case "fromServerLevel" -> null;
+                default -> FixtureApi.invoke(proxy, method, args);
+            };
+        });
+        positions = new Vec3[playerCount];
+        players = new PacketAudioPlayer[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            positions[i] = new Vec3(random.nextDouble() * AREA, 64D, random.nextDouble() * AREA);
+            players[i] = createPlayer(i);
+        }
+    }
+
+    public void tick() {
+        for (int i = 0; i < players.length; i++) {
+            if (!players[i].tick()) {
+                // Only happens every few million ticks, so it doesn't show up in the allocation rate
+                players[i] = createPlayer(i);
+            }
+        }
+    }
+
+    // There is no level without a server, so all listeners are indexed under the null level
+    public void updateListeners() {
+        ListenerIndex.instance().update(null, listeners);
+    }
+
+    public long getSentFrames() {
+        long sentFrames = 0L;
+        for (int i = 0; i < channels.size(); i++) {
+            sentFrames += channels.get(i).getSentFrames();
+        }
+        return sentFrames;
+    }
+
+    // Every other player is an announcer
+    private PacketAudioPlayer createPlayer(int index) {
+        if (index % 2 == 0) {
+            return new StaticAudioPlayer(audio, api, Plugin.MUSIC_DISC_CATEGORY, positions[index], null, DISTANCE);
+        }
+        return new LocationalAudioPlayer(audio, createChannel(new CountingChannel.Locational()), null, positions[index], DISTANCE);
+    }
+
+    private <T extends CountingChannel> T createChannel(T channel) {
+        channels.add(channel);
+        return channel;
+    }
+
+}
@@ -0,0 +1,103 @@
+package de.maxhenkel.audioplayer.fixture;
+
+import de.maxhenkel.voicechat.api.Position;
+import de.maxhenkel.voicechat.api.ServerPlayer;
+import de.maxhenkel.voicechat.api.audiochannel.AudioChannel;
+import de.maxhenkel.voicechat.api.audiochannel.LocationalAudioChannel;
+import de.maxhenkel.voicechat.api.audiochannel.StaticAudioChannel;
+import de.maxhenkel.voicechat.api.packets.MicrophonePacket;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+// Counts sent frames without allocating, unlike proxies that allocate the arguments of every call
+public class CountingChannel implements AudioChannel {
+
+    private final UUID id;
+    @Nullable
+    private String category;
+    private long sentFrames;
+
+    public CountingChannel() {
+        this.id = UUID.randomUUID();
+    }
+
+    public long getSentFrames() {
+        return sentFrames;
+    }
+
+    @Override
+    public void setCategory(@Nullable String category) {
+        this.category = category;
+    }
+
+    @Nullable
+    @Override
+    public String getCategory() {
+        return category;
+    }
+
+    @Override
+    public void send(byte[] opusData) {
+        sentFrames++;
+    }
+
+    @Override
+    public void send(MicrophonePacket packet) {
+        sentFrames++;
+    }
+
+    @Override
+    public void flush() {
+
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public void setFilter(Predicate<ServerPlayer> filter) {
+
+    }
+
+    public static class Static extends CountingChannel implements StaticAudioChannel {
+
+    }
+
+    public static class Locational extends CountingChannel implements LocationalAudioChannel {
+
+        @Nullable
+        private Position location;
+        private float distance;
+
+        @Override
+        public void updateLocation(Position location) {
+            this.location = location;
+        }
+
+        @Nullable
+        @Override
+        public Position getLocation() {
+            return location;
+        }
+
+        @Override
+        public float getDistance() {
+            return distance;
+        }
+
+        @Override
+        public void setDistance(float distance) {
+            this.distance = distance;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package de.maxhenkel.audioplayer.fixture;
+
+import de.maxhenkel.audioplayer.Plugin;
+import de.maxhenkel.voicechat.api.VoicechatApi;
+import de.maxhenkel.voicechat.api.audio.AudioConverter;
+import de.maxhenkel.voicechat.api.opus.OpusEncoder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+// Replaces the voice chat API with plain Java implementations, so tests and benchmarks don't need a running server
+public class FixtureApi {
+
+    public static final int ENCODED_FRAME_SIZE = 160;
+
+    private static final AudioConverter CONVERTER = proxy(AudioConverter.class, (proxy, method, args) -> {
+        return switch (method.getName()) {
+            case "bytesToShorts" -> bytesToShorts((byte[]) args[0]);
+            case "shortsToBytes" -> shortsToBytes((short[]) args[0]);
+            default -> objectMethod(proxy, method.getName(), args);
+        };
+    });
+
+    public static synchronized void install() {
+        if (Plugin.voicechatApi != null) {
+            return;
+        }
+        Plugin.voicechatApi = proxy(VoicechatApi.class, FixtureApi::invoke);
+    }
+
+    // Handles the API methods used to convert and encode audio
+    public static Object invoke(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "getAudioConverter" -> CONVERTER;
+            case "createEncoder" -> createEncoder();
+            // The native decoder is part of the voice chat mod, so mp3 files are decoded by the Java decoder it falls back to
+            case "createMp3Decoder" -> null;
+            default -> objectMethod(proxy, method.getName(), args);
+        };
+    }
+
+    // Produces packets of a typical Opus size without doing the actual encoding work
+    private static OpusEncoder createEncoder() {
+        boolean[] closed = new boolean[1];
+        return proxy(OpusEncoder.class, (proxy, method, args) -> {
+            return switch (method.getName()) {
+                case "encode" -> {
+                    short[] rawAudio = (short[]) args[0];
+                    byte[] packet = new byte[ENCODED_FRAME_SIZE];
+                    for (int i = 0; i < rawAudio.length; i++) {
+                        packet[i % ENCODED_FRAME_SIZE] ^= (byte) rawAudio[i];
+                    }
+                    yield packet;
+                }
+                case "resetState" -> null;
+                case "isClosed" -> closed[0];
+                case "close" -> {
+                    closed[0] = true;
+                    yield null;
+                }
+                default -> objectMethod(proxy, method.getName(), args);
+            };
+        });
+    }
+
+    private static short[] bytesToShorts(byte[] bytes) {
+        short[] shorts = new short[bytes.length / 2];
+        for (int i = 0; i < shorts.length; i++) {
+            shorts[i] = (short) ((bytes[i * 2] & 0xFF) | (bytes[i * 2 + 1] << 8));
+        }
+        return shorts;
+    }
+
+    private static byte[] shortsToBytes(short[] shorts) {
+        byte[] bytes = new byte[shorts.length * 2];
+        for (int i = 0; i < shorts.length; i++) {
+            bytes[i * 2] = (byte) shorts[i];
+            bytes[i * 2 + 1] = (byte) (shorts[i] >> 8);
+        }
+        return bytes;
+    }
+
+    public static Object objectMethod(Object proxy, String name, Object[] args) {
+        return switch (name) {
+            case "toString" -> "FixtureApi";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(name);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler);
+    }
+
+}
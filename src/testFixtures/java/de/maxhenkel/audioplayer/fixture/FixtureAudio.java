@@ -0,0 +1,67 @@
+package de.maxhenkel.audioplayer.fixture;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class FixtureAudio {
+
+    public static final int MP3_FRAME_SAMPLES = 1152;
+    private static final int MP3_FRAME_BYTES = 384;
+    private static final double FREQUENCY = 440D;
+
+    public static Path createWav(Path folder, int seconds, int sampleRate, int channels) throws IOException {
+        AudioFormat format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, 16, channels, channels * 2, sampleRate, false);
+        int frames = seconds * sampleRate;
+        byte[] data = new byte[frames * channels * 2];
+        for (int i = 0; i < frames; i++) {
+            short sample = sine(i, sampleRate);
+            for (int c = 0; c < channels; c++) {
+                int index = (i * channels + c) * 2;
+                data[index] = (byte) sample;
+                data[index + 1] = (byte) (sample >> 8);
+            }
+        }
+        Path file = folder.resolve("%s_%s_%s.wav".formatted(seconds, sampleRate, channels));
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data), format, frames)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file.toFile());
+        }
+        return file;
+    }
+
+    public static short[] createPcm(int seconds) {
+        short[] pcm = new short[seconds * 48000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = sine(i, 48000);
+        }
+        return pcm;
+    }
+
+    // Writes MPEG-1 Layer III frames without any audio data, which decode to silence
+    public static Path createSilentMp3(Path folder, int frames) throws IOException {
+        // 128 kbit/s, 48 kHz, mono
+        byte[] frame = new byte[MP3_FRAME_BYTES];
+        frame[0] = (byte) 0xFF;
+        frame[1] = (byte) 0xFB;
+        frame[2] = (byte) 0x94;
+        frame[3] = (byte) 0xC0;
+        Path file = folder.resolve("silence_%s.mp3".formatted(frames));
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (int i = 0; i < frames; i++) {
+                outputStream.write(frame);
+            }
+        }
+        return file;
+    }
+
+    private static short sine(int frame, int sampleRate) {
+        return (short) (Math.sin(2D * Math.PI * FREQUENCY * frame / sampleRate) * Short.MAX_VALUE * 0.5D);
+    }
+
+}